@@ -1,19 +1,41 @@
 package by.it.group410971.kozich.lesson01;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 
 public class FiboB {
 
+    // BigInteger.parallelMultiply появился в JDK 19, на более старых JDK его нет - ищем его в рантайме
+    private static final MethodHandle PARALLEL_MULTIPLY = findParallelMultiply();
+    // ниже этого размера (в битах) параллельное умножение не окупается
+    private static final int PARALLEL_MULTIPLY_BITS = 1 << 15;
+    // десятичных цифр в одном листе при выводе: 10^18 помещается в long
+    private static final int LEAF_DIGITS = 18;
+    private static final BigInteger LEAF_BASE = BigInteger.TEN.pow(LEAF_DIGITS);
+
     private long startTime = System.currentTimeMillis();
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         FiboB fibo = new FiboB();
         int n = 55555;
         System.out.printf("fastB(%d)=%d \n\t time=%d \n\n", n, fibo.fastB(n), fibo.time());
+
+        n = 10_000_000;
+        fibo.printB(n, OutputStream.nullOutputStream());
+        System.out.printf("printB(%d) \n\t time=%d \n\n", n, fibo.time());
     }
 
     private long time() {
-        return System.currentTimeMillis() - startTime;
+        long res = System.currentTimeMillis() - startTime;
+        startTime = System.currentTimeMillis();
+        return res;
     }
 
     BigInteger fastB(Integer n) {
@@ -30,4 +52,93 @@ public class FiboB {
 
         return fib[n];
     }
+
+    // Быстрое удвоение: F(2k) = F(k) * (2F(k+1) - F(k)), F(2k+1) = F(k)^2 + F(k+1)^2.
+    // O(log n) умножений, а BigInteger.multiply сам переходит на Карацубу и Тоом-Кука на больших числах
+    BigInteger fastDoublingB(int n) {
+        if (n < 0) throw new IllegalArgumentException("n must be non-negative: " + n);
+        BigInteger a = BigInteger.ZERO;     // F(k)
+        BigInteger b = BigInteger.ONE;      // F(k+1)
+        for (int bit = 31 - Integer.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            BigInteger c = multiply(a, b.shiftLeft(1).subtract(a));
+            BigInteger d = multiply(a, a).add(multiply(b, b));
+            if (((n >>> bit) & 1) == 0) {
+                a = c;
+                b = d;
+            } else {
+                a = d;
+                b = c.add(d);
+            }
+        }
+        return a;
+    }
+
+    // Пишет десятичную запись F(n) в поток по частям, не собирая всю строку в памяти
+    void printB(int n, OutputStream out) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+        writeDecimal(fastDoublingB(n), buffered);
+        buffered.flush();
+    }
+
+    // Делим число на 10^(18 * 2^k) сверху вниз, пока куски не поместятся в long;
+    // старшая часть пишется без ведущих нулей, остальные дополняются нулями до своей длины
+    static void writeDecimal(BigInteger x, OutputStream out) throws IOException {
+        if (x.signum() < 0) {
+            out.write('-');
+            x = x.negate();
+        }
+        List<BigInteger> powers = new ArrayList<>();
+        BigInteger power = LEAF_BASE;
+        while (power.compareTo(x) <= 0) {
+            powers.add(power);
+            power = multiply(power, power);
+        }
+        writeDecimal(x, powers, powers.size() - 1, false, out, new byte[LEAF_DIGITS]);
+    }
+
+    private static void writeDecimal(BigInteger x, List<BigInteger> powers, int level, boolean pad,
+                                     OutputStream out, byte[] leaf) throws IOException {
+        if (level < 0) {
+            long value = x.longValue();
+            int pos = LEAF_DIGITS;
+            do {
+                leaf[--pos] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            if (pad) {
+                while (pos > 0) leaf[--pos] = '0';
+            }
+            out.write(leaf, pos, LEAF_DIGITS - pos);
+            return;
+        }
+        BigInteger[] qr = x.divideAndRemainder(powers.get(level));
+        if (!pad && qr[0].signum() == 0) {
+            writeDecimal(qr[1], powers, level - 1, false, out, leaf);
+        } else {
+            writeDecimal(qr[0], powers, level - 1, pad, out, leaf);
+            writeDecimal(qr[1], powers, level - 1, true, out, leaf);
+        }
+    }
+
+    private static BigInteger multiply(BigInteger a, BigInteger b) {
+        if (PARALLEL_MULTIPLY == null || Math.min(a.bitLength(), b.bitLength()) < PARALLEL_MULTIPLY_BITS) {
+            return a.multiply(b);
+        }
+        try {
+            return (BigInteger) PARALLEL_MULTIPLY.invokeExact(a, b);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle findParallelMultiply() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(BigInteger.class, "parallelMultiply",
+                    MethodType.methodType(BigInteger.class, BigInteger.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
 }
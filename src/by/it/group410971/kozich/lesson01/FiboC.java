@@ -1,7 +1,22 @@
 package by.it.group410971.kozich.lesson01;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 public class FiboC {
 
+    // Кэш периодов Пизано, общий для всех экземпляров: ограниченный, с вытеснением
+    // давно не использованных модулей (LRU через LinkedHashMap в порядке доступа)
+    private static final int PERIOD_CACHE_SIZE = 1024;
+    private static final Map<Integer, Long> periodCache = Collections.synchronizedMap(
+            new LinkedHashMap<Integer, Long>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Long> eldest) {
+                    return size() > PERIOD_CACHE_SIZE;
+                }
+            });
+
     private long startTime = System.currentTimeMillis();
 
     public static void main(String[] args) {
@@ -9,17 +24,33 @@ public class FiboC {
         long n = 55555L;
         int m = 1000;
         System.out.printf("fasterC(%d, %d)=%d \n\t time=%d \n\n", n, m, fibo.fasterC(n, m), fibo.time());
+
+        m = 999_999_937;
+        System.out.printf("getPisanoPeriod(%d)=%d \n\t time=%d \n\n", m, fibo.getPisanoPeriod(m), fibo.time());
+
+        long bigN = Long.MAX_VALUE;
+        long bigM = 1_000_000_000_000_000_003L;
+        System.out.printf("fasterC(%d, %d)=%d \n\t time=%d \n\n", bigN, bigM, fibo.fasterC(bigN, bigM), fibo.time());
+
+        long[] ns = new long[1_000_000];
+        for (int i = 0; i < ns.length; i++) {
+            ns[i] = Long.MAX_VALUE - i;
+        }
+        long[] res = fibo.fasterC(ns, bigM);
+        System.out.printf("fasterC(ns[%d], %d)[0]=%d \n\t time=%d \n\n", ns.length, bigM, res[0], fibo.time());
     }
 
     private long time() {
-        return System.currentTimeMillis() - startTime;
+        long res = System.currentTimeMillis() - startTime;
+        startTime = System.currentTimeMillis();
+        return res;
     }
 
     long fasterC(long n, int m) {
         if (n <= 1) return n;
 
         // Найдем период Пизано для m
-        int pisanoPeriod = getPisanoPeriod(m);
+        long pisanoPeriod = getPisanoPeriod(m);
 
         // Сократим n по модулю периода
         n = n % pisanoPeriod;
@@ -28,38 +59,213 @@ public class FiboC {
         return fibonacciMod(n, m);
     }
 
-    // Метод для вычисления периода Пизано
-    private int getPisanoPeriod(int m) {
-        int prev = 0;
-        int curr = 1;
-        int period = 0;
+    // Вычисление F(n) mod m для любого положительного модуля long за O(log n) (быстрое удвоение)
+    long fasterC(long n, long m) {
+        checkArgs(n, m);
+        return fibonacciMod(n, m);
+    }
+
+    // Пакетный режим: таблица F(j * 16^w), F(j * 16^w + 1) mod m для всех 4-битных окон
+    // строится один раз на все запросы, затем каждый F(n) собирается по ненулевым
+    // 4-битным цифрам n формулой сложения (не больше 16 шагов на запрос)
+    long[] fasterC(long[] ns, long m) {
+        long maxN = 0;
+        for (long n : ns) {
+            checkArgs(n, m);
+            maxN = Math.max(maxN, n);
+        }
 
-        for (int i = 0; i < m * m; i++) {
-            int temp = (prev + curr) % m;
-            prev = curr;
-            curr = temp;
+        int windows = (64 - Long.numberOfLeadingZeros(maxN) + 3) / 4;
+        long[] tableF = new long[windows * 16];     // F(j * 16^w) mod m
+        long[] tableF1 = new long[windows * 16];    // F(j * 16^w + 1) mod m
+        long baseF = 1 % m;                         // F(16^w), для w = 0 это F(1)
+        long baseF1 = 1 % m;                        // F(16^w + 1)
+        for (int w = 0; w < windows; w++) {
+            int row = w * 16;
+            tableF1[row] = 1 % m;                   // j = 0: F(0) = 0, F(1) = 1
+            for (int j = 1; j < 16; j++) {
+                long f = tableF[row + j - 1];
+                long f1 = tableF1[row + j - 1];
+                long ff = mulMod(f, baseF, m);
+                tableF[row + j] = subMod(addMod(mulMod(f, baseF1, m), mulMod(f1, baseF, m), m), ff, m);
+                tableF1[row + j] = addMod(mulMod(f1, baseF1, m), ff, m);
+            }
+            // F(16^(w+1)) = F(16 * 16^w): еще один шаг сложения от j = 15
+            long f = tableF[row + 15];
+            long f1 = tableF1[row + 15];
+            long ff = mulMod(f, baseF, m);
+            long nextF = subMod(addMod(mulMod(f, baseF1, m), mulMod(f1, baseF, m), m), ff, m);
+            baseF1 = addMod(mulMod(f1, baseF1, m), ff, m);
+            baseF = nextF;
+        }
 
-            // Период начинается с 0, 1
-            if (prev == 0 && curr == 1) {
-                period = i + 1;
-                break;
+        long[] result = new long[ns.length];
+        for (int i = 0; i < ns.length; i++) {
+            long n = ns[i];
+            long f = 0;             // F(0)
+            long f1 = 1 % m;        // F(1)
+            for (int row = 0; n != 0; row += 16, n >>>= 4) {
+                int j = (int) (n & 15);
+                if (j == 0) continue;
+                long a = tableF[row + j];
+                long b = tableF1[row + j];
+                // F(x + y) = F(x)F(y+1) + F(x+1)F(y) - F(x)F(y)
+                // F(x + y + 1) = F(x+1)F(y+1) + F(x)F(y)
+                long ff = mulMod(f, a, m);
+                long next = subMod(addMod(mulMod(f, b, m), mulMod(f1, a, m), m), ff, m);
+                f1 = addMod(mulMod(f1, b, m), ff, m);
+                f = next;
             }
+            result[i] = f;
         }
+        return result;
+    }
+
+    // Период Пизано для m: берется из кэша, иначе считается через разложение m
+    long getPisanoPeriod(int m) {
+        if (m <= 0) throw new IllegalArgumentException("m must be positive: " + m);
+        Long cached = periodCache.get(m);
+        if (cached != null) return cached;
+        // считаем вне блокировки: в худшем случае два потока посчитают один модуль дважды
+        long period = computePisanoPeriod(m);
+        periodCache.put(m, period);
         return period;
     }
 
-    // Быстрое вычисление n-го числа Фибоначчи по модулю m (итеративно)
-    private long fibonacciMod(long n, int m) {
-        if (n <= 1) return n;
+    // pi(m) = НОК pi(p^k) по разложению m = П p^k, где pi(p^k) = p^(k-1) * pi(p)
+    private long computePisanoPeriod(int m) {
+        long period = 1;
+        int rest = m;
+        for (int p = 2; (long) p * p <= rest; p++) {
+            if (rest % p != 0) continue;
+            long primePower = 1;
+            while (rest % p == 0) {
+                rest /= p;
+                primePower *= p;
+            }
+            period = lcm(period, primePower / p * getPrimePeriod(p));
+        }
+        if (rest > 1) {
+            period = lcm(period, getPrimePeriod(rest));
+        }
+        return period;
+    }
 
-        long prev = 0;
-        long curr = 1;
+    // Период для простого p: делитель p - 1 при p = ±1 (mod 10) и 2(p + 1) при p = ±3 (mod 10).
+    // Убираем из кандидата простые множители, пока (F(d), F(d+1)) = (0, 1) mod p
+    private long getPrimePeriod(int p) {
+        if (p == 2) return 3;
+        if (p == 5) return 20;
+        long candidate = (p % 10 == 1 || p % 10 == 9) ? p - 1 : 2L * (p + 1);
+        long rest = candidate;
+        for (long q = 2; q * q <= rest; q++) {
+            if (rest % q != 0) continue;
+            while (rest % q == 0) rest /= q;
+            while (candidate % q == 0 && isPeriod(candidate / q, p)) candidate /= q;
+        }
+        if (rest > 1) {
+            while (candidate % rest == 0 && isPeriod(candidate / rest, p)) candidate /= rest;
+        }
+        return candidate;
+    }
 
-        for (long i = 2; i <= n; i++) {
-            long temp = (prev + curr) % m;
-            prev = curr;
-            curr = temp;
+    private boolean isPeriod(long d, long p) {
+        return fibonacciMod(d, p) == 0 && fibonacciMod(d + 1, p) == 1;
+    }
+
+    private static long lcm(long a, long b) {
+        long x = a, y = b;
+        while (y != 0) {
+            long t = x % y;
+            x = y;
+            y = t;
+        }
+        return a / x * b;
+    }
+
+    // Быстрое удвоение по битам n от старшего к младшему:
+    // F(2k) = F(k) * (2F(k+1) - F(k)), F(2k+1) = F(k)^2 + F(k+1)^2
+    private long fibonacciMod(long n, long m) {
+        long a = 0;         // F(k)
+        long b = 1 % m;     // F(k+1)
+        for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            long c = mulMod(a, subMod(addMod(b, b, m), a, m), m);
+            long d = addMod(mulMod(a, a, m), mulMod(b, b, m), m);
+            if (((n >>> bit) & 1) == 0) {
+                a = c;
+                b = d;
+            } else {
+                a = d;
+                b = addMod(c, d, m);
+            }
         }
-        return curr;
+        return a;
+    }
+
+    private static void checkArgs(long n, long m) {
+        if (n < 0) throw new IllegalArgumentException("n must be non-negative: " + n);
+        if (m <= 0) throw new IllegalArgumentException("m must be positive: " + m);
+    }
+
+    // (a + b) mod m без переполнения, a и b уже в [0, m)
+    static long addMod(long a, long b, long m) {
+        return a >= m - b ? a - (m - b) : a + b;
+    }
+
+    // (a - b) mod m, a и b уже в [0, m)
+    static long subMod(long a, long b, long m) {
+        return a >= b ? a - b : a + (m - b);
+    }
+
+    // (a * b) mod m для любого положительного long модуля, a и b уже в [0, m).
+    // 128-битное произведение собирается через Math.multiplyHigh
+    static long mulMod(long a, long b, long m) {
+        long hi = Math.multiplyHigh(a, b);
+        long lo = a * b;
+        if (hi == 0 && lo >= 0) return lo % m;
+        return remainder128(hi, lo, m);
+    }
+
+    // Остаток от деления 128-битного (hi:lo) на m при hi < m (деление "в столбик"
+    // цифрами по 32 бита, алгоритм divlu из Hacker's Delight) - два аппаратных деления
+    private static long remainder128(long hi, long lo, long m) {
+        final long base = 1L << 32;
+        final long mask = base - 1;
+        int s = Long.numberOfLeadingZeros(m);   // m > 0, поэтому s >= 1
+        long v = m << s;
+        long vn1 = v >>> 32;
+        long vn0 = v & mask;
+
+        long un32 = (hi << s) | (lo >>> (64 - s));
+        long un10 = lo << s;
+        long un1 = un10 >>> 32;
+        long un0 = un10 & mask;
+
+        long q1 = divideBy32(un32, vn1);
+        long rhat = un32 - q1 * vn1;
+        while (q1 >= base || Long.compareUnsigned(q1 * vn0, (rhat << 32) | un1) > 0) {
+            q1--;
+            rhat += vn1;
+            if (rhat >= base) break;
+        }
+
+        long un21 = (un32 << 32) + un1 - q1 * v;
+        long q0 = divideBy32(un21, vn1);
+        rhat = un21 - q0 * vn1;
+        while (q0 >= base || Long.compareUnsigned(q0 * vn0, (rhat << 32) | un0) > 0) {
+            q0--;
+            rhat += vn1;
+            if (rhat >= base) break;
+        }
+
+        return ((un21 << 32) + un0 - q0 * v) >>> s;
+    }
+
+    // Беззнаковое деление 64-битного x на d < 2^32 без BigInteger (как в Long.divideUnsigned до JDK 19)
+    private static long divideBy32(long x, long d) {
+        long q = ((x >>> 1) / d) << 1;
+        long r = x - q * d;
+        if (Long.compareUnsigned(r, d) >= 0) q++;
+        return q;
     }
 }
@@ -2,6 +2,7 @@ package by.it.group410971.kozich.lesson01;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
 
 import static org.junit.Assert.assertTrue;
@@ -41,4 +42,59 @@ public class Lesson01Test {
         assertTrue("fasterC failed 2", fibo.fasterC(1, 2) == 1L);
         assertTrue("fasterC failed 3", fibo.fasterC(999999999, 321) == 34L);
     }
+
+    @Test(timeout = 2000)
+    public void checkC_fastDoubling() throws Exception {
+        FiboC fibo = new FiboC();
+        assertTrue("fasterC long failed 1", fibo.fasterC(999999999L, 321L) == 34L);
+        long m = Long.MAX_VALUE;
+        long n = 1_000_003L;
+        BigInteger a = BigInteger.ZERO, b = BigInteger.ONE, bm = BigInteger.valueOf(m);
+        for (long i = 0; i < n; i++) {
+            BigInteger t = a.add(b).mod(bm);
+            a = b;
+            b = t;
+        }
+        assertTrue("fasterC long failed 2", fibo.fasterC(n, m) == a.longValue());
+        long[] batch = fibo.fasterC(new long[]{0, 1, 10, n, 999999999L}, m);
+        assertTrue("fasterC batch failed 1", batch[0] == 0 && batch[1] == 1 && batch[2] == 55);
+        assertTrue("fasterC batch failed 2", batch[3] == a.longValue());
+        assertTrue("fasterC batch failed 3", fibo.fasterC(new long[]{999999999L}, 321L)[0] == 34L);
+        long[] ns = {Long.MAX_VALUE, Long.MAX_VALUE - 12345, 1L << 62, 0xF0F0F0F0F0F0F0FL};
+        long[] res = fibo.fasterC(ns, 1_000_000_000_000_000_003L);
+        for (int i = 0; i < ns.length; i++) {
+            assertTrue("fasterC batch failed 4", res[i] == fibo.fasterC(ns[i], 1_000_000_000_000_000_003L));
+        }
+    }
+
+    @Test(timeout = 2000)
+    public void checkC_pisanoPeriod() throws Exception {
+        FiboC fibo = new FiboC();
+        for (int m = 1; m <= 500; m++) {
+            long prev = 0, curr = 1 % m, period = 0;
+            do {
+                long temp = (prev + curr) % m;
+                prev = curr;
+                curr = temp;
+                period++;
+            } while (prev != 0 || curr != 1 % m);
+            assertTrue("getPisanoPeriod failed " + m, fibo.getPisanoPeriod(m) == period);
+        }
+        assertTrue("getPisanoPeriod failed 10^9", fibo.getPisanoPeriod(1_000_000_000) == 1_500_000_000L);
+        int m = 999_999_937;
+        long n = 123_456_789_012_345L;
+        assertTrue("fasterC failed big m", fibo.fasterC(n, m) == fibo.fasterC(n, (long) m));
+    }
+
+    @Test(timeout = 2000)
+    public void checkB_fastDoubling() throws Exception {
+        FiboB fibo = new FiboB();
+        for (int n : new int[]{0, 1, 2, 3, 92, 93, 1000, 55555}) {
+            BigInteger expected = fibo.fastB(n);
+            assertTrue("fastDoublingB failed " + n, fibo.fastDoublingB(n).equals(expected));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            fibo.printB(n, out);
+            assertTrue("printB failed " + n, out.toString("US-ASCII").equals(expected.toString()));
+        }
+    }
 }
@@ -3,6 +3,7 @@ package by.it.group410971.kozich.lesson02;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.DoubleConsumer;
 
 public class A_VideoRegistrator {
 
@@ -11,6 +12,12 @@ public class A_VideoRegistrator {
         double[] events = new double[]{1, 1.1, 1.6, 2.2, 2.4, 2.7, 3.9, 8.1, 9.1, 5.5, 3.7};
         List<Double> starts = instance.calcStartTimes(events, 1); // длина сеанса 1
         System.out.println(starts);
+
+        // потоковый режим: события приходят по одному, опоздание не больше 6 единиц времени
+        StreamingCover cover = new StreamingCover(1, 6, start -> System.out.print(start + " "));
+        cover.accept(new double[]{1, 1.1, 1.6, 2.2, 2.4, 2.7, 3.9, 8.1, 9.1, 5.5, 3.7});
+        cover.flush();
+        System.out.println();
     }
 
     List<Double> calcStartTimes(double[] events, double workDuration) {
@@ -38,5 +45,97 @@ public class A_VideoRegistrator {
 
         return result;
     }
-}
 
+    // Потоковое покрытие событий сеансами фиксированной длины без глобальной сортировки.
+    // События могут приходить не по порядку, но опаздывать не больше чем на reorderWindow
+    // относительно самого позднего уже пришедшего события. Такие события ждут в куче на массиве
+    // double[] и обрабатываются по возрастанию, как только окно их "закрывает".
+    // Моменты старта отдаются в DoubleConsumer без упаковки в Double.
+    static class StreamingCover {
+        private final double workDuration;
+        private final double reorderWindow;
+        private final DoubleConsumer onStart;
+
+        private double[] heap = new double[16];   // min-куча ожидающих событий
+        private int size = 0;
+        private double maxSeen = Double.NEGATIVE_INFINITY;
+        private double currentStart = Double.NEGATIVE_INFINITY;
+        private double currentEnd = Double.NEGATIVE_INFINITY;
+
+        StreamingCover(double workDuration, double reorderWindow, DoubleConsumer onStart) {
+            if (workDuration < 0) throw new IllegalArgumentException("workDuration must be non-negative");
+            if (reorderWindow < 0) throw new IllegalArgumentException("reorderWindow must be non-negative");
+            this.workDuration = workDuration;
+            this.reorderWindow = reorderWindow;
+            this.onStart = onStart;
+        }
+
+        void accept(double event) {
+            if (event < currentStart) {
+                // опоздало сильнее окна: порядок уже не восстановить,
+                // покрываем его отдельным сеансом, не трогая текущий
+                onStart.accept(event);
+                return;
+            }
+            push(event);
+            if (event > maxSeen) maxSeen = event;
+            drain(maxSeen - reorderWindow);
+        }
+
+        void accept(double[] events) {
+            accept(events, 0, events.length);
+        }
+
+        void accept(double[] events, int from, int to) {
+            for (int i = from; i < to; i++) {
+                accept(events[i]);
+            }
+        }
+
+        // Обрабатывает все ожидающие события (конец потока или принудительная выдача)
+        void flush() {
+            drain(Double.POSITIVE_INFINITY);
+        }
+
+        private void drain(double watermark) {
+            while (size > 0 && heap[0] <= watermark) {
+                double event = pop();
+                if (event > currentEnd) start(event);
+            }
+        }
+
+        private void start(double event) {
+            currentStart = event;
+            currentEnd = event + workDuration;
+            onStart.accept(event);
+        }
+
+        private void push(double value) {
+            if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= value) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        private double pop() {
+            double top = heap[0];
+            double last = heap[--size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+                if (last <= heap[child]) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+}
@@ -4,8 +4,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
 
 public class B_Sheduler {
+    // с какого размера фильтрация идет параллельно
+    private static final int PARALLEL_FILTER_THRESHOLD = 1 << 16;
+
     public static void main(String[] args) {
         B_Sheduler instance = new B_Sheduler();
         Event[] events = {
@@ -19,6 +24,25 @@ public class B_Sheduler {
 
         List<Event> starts = instance.calcStartTimes(events, 0, 10);
         System.out.println(starts);
+
+        // сравнение со структурой массивов на большом случайном наборе
+        int n = 5_000_000;
+        Random random = new Random(42);
+        int[] startTimes = new int[n];
+        int[] stopTimes = new int[n];
+        Event[] big = new Event[n];
+        for (int i = 0; i < n; i++) {
+            startTimes[i] = random.nextInt(100_000_000);
+            stopTimes[i] = startTimes[i] + 1 + random.nextInt(1000);
+            big[i] = new Event(startTimes[i], stopTimes[i]);
+        }
+        long startTime = System.currentTimeMillis();
+        int boxed = instance.calcStartTimes(big, 0, 100_000_000).size();
+        long boxedTime = System.currentTimeMillis() - startTime;
+        startTime = System.currentTimeMillis();
+        int primitive = instance.calcStartTimes(startTimes, stopTimes, 0, 100_000_000).length;
+        long primitiveTime = System.currentTimeMillis() - startTime;
+        System.out.printf("Event[]: %d (время %d), int[]: %d (время %d)\n", boxed, boxedTime, primitive, primitiveTime);
     }
 
     List<Event> calcStartTimes(Event[] events, int from, int to) {
@@ -47,6 +71,135 @@ public class B_Sheduler {
         return result;
     }
 
+    // Тот же жадный алгоритм на структуре массивов: события заданы парами starts[i], stops[i].
+    // Фильтрация по [from, to] идет параллельно, сортировка по stop - поразрядная (LSD, по 8 бит,
+    // устойчивая), объектов на событие не создается. Возвращает индексы выбранных событий.
+    int[] calcStartTimes(int[] starts, int[] stops, int from, int to) {
+        int[] filtered = filter(starts, stops, from, to);
+        radixSortByKey(filtered, stops);
+
+        int[] result = new int[filtered.length];
+        int count = 0;
+        int currentTime = from;
+        for (int i : filtered) {
+            if (starts[i] >= currentTime) {
+                result[count++] = i;
+                currentTime = stops[i];
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Взвешенный режим: набор попарно непересекающихся событий с максимальной суммой weights.
+    // ДП по событиям, упорядоченным по (stop, start): best[j + 1] = max(best[j], w[j] + best[pred[j]]),
+    // где pred[j] - сколько событий заканчиваются не позже начала j (бинарный поиск, считается параллельно).
+    // Возвращает индексы выбранных событий в порядке окончания, восстановление - циклом, без рекурсии.
+    int[] calcMaxWeight(int[] starts, int[] stops, long[] weights, int from, int to) {
+        if (weights.length != starts.length) throw new IllegalArgumentException("weights and starts differ in length");
+        // порядок (stop, start): событие нулевой длины [x, x] идет после всех, кто заканчивается в x,
+        // иначе они не попали бы в его префикс совместимых
+        int[] order = filter(starts, stops, from, to);
+        radixSortByKey(order, starts);
+        radixSortByKey(order, stops);
+        int m = order.length;
+        int[] sortedStops = new int[m];
+        for (int j = 0; j < m; j++) sortedStops[j] = stops[order[j]];
+
+        int[] pred = new int[m];
+        IntStream range = IntStream.range(0, m);
+        if (m >= PARALLEL_FILTER_THRESHOLD) range = range.parallel();
+        range.forEach(j -> pred[j] = upperBound(sortedStops, j, starts[order[j]]));
+
+        long[] best = new long[m + 1];
+        boolean[] take = new boolean[m];
+        for (int j = 0; j < m; j++) {
+            long with = weights[order[j]] + best[pred[j]];
+            take[j] = with > best[j];
+            best[j + 1] = take[j] ? with : best[j];
+        }
+
+        int[] result = new int[m];
+        int count = 0;
+        for (int j = m; j > 0; ) {
+            if (take[j - 1]) {
+                result[count++] = order[j - 1];
+                j = pred[j - 1];
+            } else {
+                j--;
+            }
+        }
+        // собирали с конца - разворачиваем
+        for (int i = 0, k = count - 1; i < k; i++, k--) {
+            int t = result[i];
+            result[i] = result[k];
+            result[k] = t;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Индексы событий, целиком лежащих в [from, to], в исходном порядке
+    private int[] filter(int[] starts, int[] stops, int from, int to) {
+        if (starts.length != stops.length) throw new IllegalArgumentException("starts and stops differ in length");
+        IntStream range = IntStream.range(0, starts.length);
+        if (starts.length >= PARALLEL_FILTER_THRESHOLD) range = range.parallel();
+        return range.filter(i -> starts[i] >= from && stops[i] <= to).toArray();
+    }
+
+    // Количество элементов a[0..length) не больше key (a отсортирован по неубыванию)
+    private static int upperBound(int[] a, int length, int key) {
+        int left = 0, right = length;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (a[mid] <= key) {
+                left = mid + 1;
+            } else {
+                right = mid;
+            }
+        }
+        return left;
+    }
+
+    // Устойчивая LSD-сортировка индексов по keys[index]; разряды, одинаковые у всех ключей, пропускаются
+    static void radixSortByKey(int[] indices, int[] keys) {
+        int n = indices.length;
+        if (n < 2) return;
+        int[] k = new int[n];
+        int[] kBuf = new int[n];
+        int[] iBuf = new int[n];
+        int or = 0;
+        int and = -1;
+        for (int i = 0; i < n; i++) {
+            k[i] = keys[indices[i]] ^ Integer.MIN_VALUE;  // знаковый порядок -> беззнаковый
+            or |= k[i];
+            and &= k[i];
+        }
+        int[] srcIdx = indices;
+        int[] dstIdx = iBuf;
+        int[] count = new int[256];
+        for (int shift = 0; shift < 32; shift += 8) {
+            if ((((or ^ and) >>> shift) & 0xFF) == 0) continue;
+            Arrays.fill(count, 0);
+            for (int i = 0; i < n; i++) count[(k[i] >>> shift) & 0xFF]++;
+            for (int d = 0, sum = 0; d < 256; d++) {
+                int c = count[d];
+                count[d] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int pos = count[(k[i] >>> shift) & 0xFF]++;
+                kBuf[pos] = k[i];
+                dstIdx[pos] = srcIdx[i];
+            }
+            int[] t = k;
+            k = kBuf;
+            kBuf = t;
+            t = srcIdx;
+            srcIdx = dstIdx;
+            dstIdx = t;
+        }
+        if (srcIdx != indices) System.arraycopy(srcIdx, 0, indices, 0, n);
+    }
+
     static class Event {
         int start;
         int stop;
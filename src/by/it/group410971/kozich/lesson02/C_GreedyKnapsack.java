@@ -2,7 +2,9 @@ package by.it.group410971.kozich.lesson02;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class C_GreedyKnapsack {
     public static void main(String[] args) throws FileNotFoundException {
@@ -11,6 +13,30 @@ public class C_GreedyKnapsack {
         double costFinal = new C_GreedyKnapsack().calc(inputStream);
         long finishTime = System.currentTimeMillis();
         System.out.printf("Общая стоимость %f (время %d)\n", costFinal, finishTime - startTime);
+
+        int n = 10_000_000;
+        int[] cost = new int[n];
+        int[] weight = new int[n];
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++) {
+            cost[i] = random.nextInt(1000);
+            weight[i] = 1 + random.nextInt(1000);
+        }
+        startTime = System.currentTimeMillis();
+        costFinal = new C_GreedyKnapsack().calc(cost, weight, 1_000_000_000L);
+        finishTime = System.currentTimeMillis();
+        System.out.printf("Без сортировки, %d предметов: %f (время %d)\n", n, costFinal, finishTime - startTime);
+
+        startTime = System.currentTimeMillis();
+        KnapsackIndex index = new KnapsackIndex(cost, weight);
+        long[] capacities = new long[100_000];
+        for (int i = 0; i < capacities.length; i++) {
+            capacities[i] = i * 50_000L;
+        }
+        double[] values = index.valueAt(capacities);
+        finishTime = System.currentTimeMillis();
+        System.out.printf("Индекс + %d запросов: W=%d -> %f (время %d)\n",
+                capacities.length, capacities[20_000], values[20_000], finishTime - startTime);
     }
 
     double calc(InputStream inputStream) throws FileNotFoundException {
@@ -53,6 +79,193 @@ public class C_GreedyKnapsack {
         return result;
     }
 
+    // Тихий режим: те же данные, но без печати и без объектов Item
+    double calcQuiet(InputStream inputStream) {
+        Scanner input = new Scanner(inputStream);
+        int n = input.nextInt();
+        int W = input.nextInt();
+        int[] cost = new int[n];
+        int[] weight = new int[n];
+        for (int i = 0; i < n; i++) {
+            cost[i] = input.nextInt();
+            weight[i] = input.nextInt();
+        }
+        return calc(cost, weight, W);
+    }
+
+    // Дробный рюкзак без сортировки, за ожидаемое O(n): быстрый выбор по удельной стоимости.
+    // На каждом шаге случайный опорный предмет делит оставшиеся на дороже / так же / дешевле;
+    // если "дороже" не помещаются целиком - продолжаем только в них, иначе берем их целиком,
+    // добираем равные опорному и продолжаем в "дешевле". Ничего не печатает.
+    double calc(int[] cost, int[] weight, long W) {
+        if (cost.length != weight.length) throw new IllegalArgumentException("cost and weight differ in length");
+        if (W < 0) throw new IllegalArgumentException("W must be non-negative: " + W);
+        int n = cost.length;
+        int[] idx = new int[n];
+        double result = 0;
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (weight[i] < 0 || cost[i] < 0) throw new IllegalArgumentException("negative item " + i);
+            if (weight[i] == 0) {
+                result += cost[i];          // невесомое берем всегда
+            } else {
+                idx[size++] = i;
+            }
+        }
+
+        long remaining = W;
+        int lo = 0;
+        int hi = size;                      // рассматриваем idx[lo..hi)
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (lo < hi && remaining > 0) {
+            int p = idx[lo + random.nextInt(hi - lo)];
+            long pc = cost[p];
+            long pw = weight[p];
+            // трехпутевое разбиение: [lo, lt) дороже опорного, [lt, gt] равны, (gt, hi) дешевле
+            int lt = lo, i = lo, gt = hi - 1;
+            while (i <= gt) {
+                int x = idx[i];
+                int cmp = Long.compare(cost[x] * pw, pc * weight[x]);
+                if (cmp > 0) {
+                    idx[i++] = idx[lt];
+                    idx[lt++] = x;
+                } else if (cmp < 0) {
+                    idx[i] = idx[gt];
+                    idx[gt--] = x;
+                } else {
+                    i++;
+                }
+            }
+
+            long heavierWeight = 0;
+            long heavierCost = 0;
+            for (int k = lo; k < lt; k++) {
+                heavierWeight += weight[idx[k]];
+                heavierCost += cost[idx[k]];
+            }
+            if (heavierWeight > remaining) {
+                hi = lt;
+                continue;
+            }
+            result += heavierCost;
+            remaining -= heavierWeight;
+
+            long equalWeight = 0;
+            long equalCost = 0;
+            for (int k = lt; k <= gt; k++) {
+                equalWeight += weight[idx[k]];
+                equalCost += cost[idx[k]];
+            }
+            if (equalWeight >= remaining) {
+                result += (double) remaining * pc / pw;
+                remaining = 0;
+            } else {
+                result += equalCost;
+                remaining -= equalWeight;
+                lo = gt + 1;
+            }
+        }
+        return result;
+    }
+
+    // Подготовленный индекс для многих запросов по одному набору предметов: предметы один раз
+    // упорядочиваются по убыванию удельной стоимости, дальше хранятся только префиксные суммы
+    // весов и стоимостей. Ответ для вместимости W - бинарный поиск по префиксу весов, O(log n).
+    static class KnapsackIndex {
+        private final long[] prefixWeight;  // prefixWeight[k] - вес первых k предметов по убыванию выгоды
+        private final long[] prefixCost;
+        private final int[] sortedCost;
+        private final int[] sortedWeight;
+        private final double freeCost;      // стоимость невесомых предметов, они берутся всегда
+
+        KnapsackIndex(int[] cost, int[] weight) {
+            if (cost.length != weight.length) throw new IllegalArgumentException("cost and weight differ in length");
+            int[] idx = new int[cost.length];
+            int size = 0;
+            long free = 0;
+            for (int i = 0; i < cost.length; i++) {
+                if (weight[i] < 0 || cost[i] < 0) throw new IllegalArgumentException("negative item " + i);
+                if (weight[i] == 0) {
+                    free += cost[i];
+                } else {
+                    idx[size++] = i;
+                }
+            }
+            sortByRatio(idx, 0, size - 1, cost, weight);
+
+            freeCost = free;
+            sortedCost = new int[size];
+            sortedWeight = new int[size];
+            prefixWeight = new long[size + 1];
+            prefixCost = new long[size + 1];
+            for (int k = 0; k < size; k++) {
+                sortedCost[k] = cost[idx[k]];
+                sortedWeight[k] = weight[idx[k]];
+                prefixWeight[k + 1] = prefixWeight[k] + sortedWeight[k];
+                prefixCost[k + 1] = prefixCost[k] + sortedCost[k];
+            }
+        }
+
+        double valueAt(long W) {
+            if (W < 0) throw new IllegalArgumentException("W must be non-negative: " + W);
+            // k - сколько первых предметов помещаются целиком
+            int left = 0, right = prefixWeight.length - 1;
+            while (left < right) {
+                int mid = (left + right + 1) >>> 1;
+                if (prefixWeight[mid] <= W) {
+                    left = mid;
+                } else {
+                    right = mid - 1;
+                }
+            }
+            double result = freeCost + prefixCost[left];
+            if (left < sortedWeight.length) {
+                result += (double) (W - prefixWeight[left]) * sortedCost[left] / sortedWeight[left];
+            }
+            return result;
+        }
+
+        double[] valueAt(long[] capacities) {
+            double[] result = new double[capacities.length];
+            for (int i = 0; i < capacities.length; i++) {
+                result[i] = valueAt(capacities[i]);
+            }
+            return result;
+        }
+
+        // Быстрая сортировка индексов с 3-разбиением по убыванию cost/weight (точное сравнение
+        // перекрестным умножением); рекурсия только в меньшую часть
+        private static void sortByRatio(int[] idx, int lo, int hi, int[] cost, int[] weight) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (lo < hi) {
+                int p = idx[lo + random.nextInt(hi - lo + 1)];
+                long pc = cost[p];
+                long pw = weight[p];
+                int lt = lo, i = lo, gt = hi;
+                while (i <= gt) {
+                    int x = idx[i];
+                    int cmp = Long.compare(cost[x] * pw, pc * weight[x]);
+                    if (cmp > 0) {
+                        idx[i++] = idx[lt];
+                        idx[lt++] = x;
+                    } else if (cmp < 0) {
+                        idx[i] = idx[gt];
+                        idx[gt--] = x;
+                    } else {
+                        i++;
+                    }
+                }
+                if (lt - lo < hi - gt) {
+                    sortByRatio(idx, lo, lt - 1, cost, weight);
+                    lo = gt + 1;
+                } else {
+                    sortByRatio(idx, gt + 1, hi, cost, weight);
+                    hi = lt - 1;
+                }
+            }
+        }
+    }
+
     private static class Item implements Comparable<Item> {
         int cost;
         int weight;
@@ -3,7 +3,9 @@ package by.it.group410971.kozich.lesson02;
 import org.junit.Test;
 
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertTrue;
 
@@ -27,6 +29,19 @@ public class Lesson02Test {
         assertTrue("slowA failed", ok);
     }
 
+    @Test(timeout = 2000)
+    public void checkA_streamingCover() {
+        double[] events = new double[]{1, 1.1, 1.6, 2.2, 2.4, 2.7, 3.9, 8.1, 9.1, 5.5, 3.7};
+        StringBuilder sb = new StringBuilder();
+        A_VideoRegistrator.StreamingCover cover =
+                new A_VideoRegistrator.StreamingCover(1, 6, start -> sb.append(start).append(' '));
+        cover.accept(events, 0, 7);
+        cover.accept(events, 7, events.length);
+        cover.flush();
+        boolean ok = sb.toString().trim().equals("1.0 2.2 3.7 5.5 8.1");
+        assertTrue("StreamingCover failed", ok);
+    }
+
     @Test(timeout = 2000)
     public void checkB_sheduler() {
         B_Sheduler instance = new B_Sheduler();
@@ -43,6 +58,59 @@ public class Lesson02Test {
         assertTrue("B_Sheduler failed", ok);
     }
 
+    @Test(timeout = 2000)
+    public void checkB_shedulerArrays() {
+        B_Sheduler instance = new B_Sheduler();
+        int[] starts = {0, 0, 1, 3, 1, 1, 1, 3, 2, 2, 2, 7, 3, 2, 2, 3, 4, 6, 6, 7, 8, 4, 8, 7};
+        int[] stops = {3, 1, 2, 5, 3, 3, 3, 6, 7, 3, 7, 9, 5, 4, 3, 7, 5, 7, 9, 9, 9, 6, 10, 10};
+        int[] selected = instance.calcStartTimes(starts, stops, 0, 10);
+        StringBuilder sb = new StringBuilder();
+        for (int i : selected) {
+            sb.append("(").append(starts[i]).append(":").append(stops[i]).append(")");
+        }
+        boolean ok = sb.toString().equals("(0:1)(1:2)(2:3)(3:5)(6:7)(7:9)");
+        assertTrue("B_Sheduler arrays failed", ok);
+    }
+
+    @Test(timeout = 2000)
+    public void checkB_shedulerWeighted() {
+        B_Sheduler instance = new B_Sheduler();
+        int[] starts = {0, 0, 1, 2, 4, 4};
+        int[] stops = {5, 1, 2, 4, 6, 9};
+        long[] weights = {10, 3, 3, 3, 2, 7};
+        int[] selected = instance.calcMaxWeight(starts, stops, weights, 0, 10);
+        boolean ok = Arrays.equals(selected, new int[]{1, 2, 3, 5});   // 3 + 3 + 3 + 7 = 16 > 10 + 2
+        assertTrue("B_Sheduler weighted failed 1", ok);
+
+        Random random = new Random(1);
+        for (int test = 0; test < 50; test++) {
+            int n = 12;
+            int[] s = new int[n], e = new int[n];
+            long[] w = new long[n];
+            for (int i = 0; i < n; i++) {
+                s[i] = random.nextInt(20);
+                e[i] = s[i] + random.nextInt(6);
+                w[i] = random.nextInt(10);
+            }
+            long bestBrute = 0;
+            for (int mask = 0; mask < (1 << n); mask++) {
+                long sum = 0;
+                boolean compatible = true;
+                for (int i = 0; i < n && compatible; i++) {
+                    if ((mask >> i & 1) == 0) continue;
+                    sum += w[i];
+                    for (int j = i + 1; j < n && compatible; j++) {
+                        if ((mask >> j & 1) == 1) compatible = e[i] <= s[j] || e[j] <= s[i];
+                    }
+                }
+                if (compatible) bestBrute = Math.max(bestBrute, sum);
+            }
+            long got = 0;
+            for (int i : instance.calcMaxWeight(s, e, w, 0, 30)) got += w[i];
+            assertTrue("B_Sheduler weighted failed 2", got == bestBrute);
+        }
+    }
+
     @Test(timeout = 2000)
     public void checkC_greedyKnapsack() throws Exception {
         InputStream inputStream = C_GreedyKnapsack.class.getResourceAsStream("greedyKnapsack.txt");
@@ -51,4 +119,66 @@ public class Lesson02Test {
         assertTrue("B_Sheduler failed", ok);
     }
 
+    @Test(timeout = 2000)
+    public void checkC_greedyKnapsackSelect() throws Exception {
+        InputStream inputStream = C_GreedyKnapsack.class.getResourceAsStream("greedyKnapsack.txt");
+        C_GreedyKnapsack instance = new C_GreedyKnapsack();
+        assertTrue("calcQuiet failed", instance.calcQuiet(inputStream) == 200);
+
+        Random random = new Random(7);
+        for (int test = 0; test < 100; test++) {
+            int n = 1 + random.nextInt(50);
+            int[] cost = new int[n];
+            int[] weight = new int[n];
+            Integer[] order = new Integer[n];
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                cost[i] = random.nextInt(20);
+                weight[i] = 1 + random.nextInt(9);
+                order[i] = i;
+                total += weight[i];
+            }
+            long W = random.nextInt((int) total + 2);
+            Arrays.sort(order, (a, b) -> Long.compare((long) cost[b] * weight[a], (long) cost[a] * weight[b]));
+            double expected = 0;
+            long left = W;
+            for (int i : order) {
+                if (weight[i] <= left) {
+                    expected += cost[i];
+                    left -= weight[i];
+                } else if (left > 0) {
+                    expected += (double) left * cost[i] / weight[i];
+                    left = 0;
+                }
+            }
+            assertTrue("calc select failed", Math.abs(instance.calc(cost, weight, W) - expected) < 1e-9);
+        }
+    }
+
+    @Test(timeout = 2000)
+    public void checkC_knapsackIndex() {
+        C_GreedyKnapsack instance = new C_GreedyKnapsack();
+        C_GreedyKnapsack.KnapsackIndex sample =
+                new C_GreedyKnapsack.KnapsackIndex(new int[]{60, 100, 120, 100}, new int[]{20, 50, 30, 50});
+        assertTrue("KnapsackIndex failed 1", sample.valueAt(60) == 200);
+
+        Random random = new Random(11);
+        int n = 300;
+        int[] cost = new int[n];
+        int[] weight = new int[n];
+        for (int i = 0; i < n; i++) {
+            cost[i] = random.nextInt(1000);
+            weight[i] = random.nextInt(100);
+        }
+        C_GreedyKnapsack.KnapsackIndex index = new C_GreedyKnapsack.KnapsackIndex(cost, weight);
+        long[] capacities = new long[200];
+        for (int i = 0; i < capacities.length; i++) {
+            capacities[i] = random.nextInt(20_000);
+        }
+        double[] values = index.valueAt(capacities);
+        for (int i = 0; i < capacities.length; i++) {
+            double expected = instance.calc(cost, weight, capacities[i]);
+            assertTrue("KnapsackIndex failed 2", Math.abs(values[i] - expected) < 1e-6);
+        }
+    }
 }
@@ -1,8 +1,20 @@
 package by.it.group410971.kozich.lesson03;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 //Lesson 3. A_Huffman.
 //Разработайте метод encode(File file) для кодирования строки (код Хаффмана)
@@ -40,20 +52,25 @@ import java.util.*;
 
 public class A_Huffman {
 
-    // индекс данных из листьев
-    static private final Map<Character, String> codes = new TreeMap<>();
+    // индекс данных из листьев (свой у каждого экземпляра, без общего статического состояния)
+    private final Map<Character, String> codes = new TreeMap<>();
 
-    public static void main(String[] args) throws FileNotFoundException {
+    public static void main(String[] args) throws IOException {
         InputStream inputStream = A_Huffman.class.getResourceAsStream("dataA.txt");
         A_Huffman instance = new A_Huffman();
         long startTime = System.currentTimeMillis();
         String result = instance.encode(inputStream);
         long finishTime = System.currentTimeMillis();
-        System.out.printf("%d %d\n", codes.size(), result.length());
-        for (Map.Entry<Character, String> entry : codes.entrySet()) {
+        System.out.printf("%d %d\n", instance.codes.size(), result.length());
+        for (Map.Entry<Character, String> entry : instance.codes.entrySet()) {
             System.out.printf("%s: %s\n", entry.getKey(), entry.getValue());
         }
         System.out.println(result);
+
+        // упакованный поток: заголовок + биты
+        ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        instance.encodePacked(A_Huffman.class.getResourceAsStream("dataA.txt"), packed);
+        System.out.printf("packed: %d байт\n", packed.size());
     }
 
     String encode(InputStream inputStream) throws FileNotFoundException {
@@ -98,6 +115,484 @@ public class A_Huffman {
         return sb.toString();
     }
 
+    // Битовая упаковка: строка из файла кодируется каноническим кодом Хаффмана
+    // и пишется в поток в формате CanonicalCode.writeTo (заголовок + биты)
+    void encodePacked(InputStream inputStream, OutputStream out) throws IOException {
+        Scanner scanner = new Scanner(inputStream);
+        byte[] data = scanner.next().getBytes(StandardCharsets.ISO_8859_1);
+        CanonicalCode code = CanonicalCode.of(data, 0, data.length);
+        code.writeTo(data, 0, data.length, out);
+    }
+
+    // наибольший блок compressFile, худший случай которого еще помещается в массив
+    static final int MAX_BLOCK_SIZE = (Integer.MAX_VALUE - 8) / (CanonicalCode.MAX_LENGTH / 8);
+
+    // Поблочное параллельное сжатие файла. Файл отображается в память кусками по blockSize байт,
+    // гистограммы кусков считаются параллельно (ForkJoinPool через parallel stream) и сливаются
+    // в один код. Затем куски кодируются параллельно волнами по несколько блоков (чтобы в памяти
+    // не лежал весь результат) в независимые битовые потоки и пишутся по порядку.
+    // Формат: 256 байт длин кодов, блоки, индекс (по каждому блоку: long символов, long байт),
+    // int число блоков. B_Huffman.decodeBlocks декодирует блоки тоже параллельно.
+    void compressFile(Path input, OutputStream out, int blockSize) throws IOException {
+        // закодированный блок - один byte[], а код может занимать до MAX_LENGTH бит на байт
+        if (blockSize <= 0 || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("blockSize out of range: " + blockSize);
+        }
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long blockCount = (size + blockSize - 1) / blockSize;
+            if (blockCount > Integer.MAX_VALUE) throw new IllegalArgumentException("too many blocks: " + blockCount);
+            int blocks = (int) blockCount;
+            MappedByteBuffer[] maps = new MappedByteBuffer[blocks];
+            for (int b = 0; b < blocks; b++) {
+                long offset = (long) b * blockSize;
+                maps[b] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(blockSize, size - offset));
+            }
+
+            long[] freq = IntStream.range(0, blocks).parallel()
+                    .mapToObj(b -> histogram(maps[b]))
+                    .collect(() -> new long[256], A_Huffman::addHistogram, A_Huffman::addHistogram);
+            CanonicalCode code = CanonicalCode.fromFrequencies(freq);
+
+            DataOutputStream data = new DataOutputStream(out);
+            data.write(code.lengths);
+            long[] byteSizes = new long[blocks];
+            int wave = Math.max(1, 2 * ForkJoinPool.getCommonPoolParallelism());
+            for (int start = 0; start < blocks; start += wave) {
+                int first = start;
+                byte[][] encoded = new byte[Math.min(wave, blocks - start)][];
+                IntStream.range(0, encoded.length).parallel()
+                        .forEach(i -> encoded[i] = encodeBlock(code, maps[first + i]));
+                for (int i = 0; i < encoded.length; i++) {
+                    data.write(encoded[i]);
+                    byteSizes[first + i] = encoded[i].length;
+                }
+            }
+            for (int b = 0; b < blocks; b++) {
+                data.writeLong(maps[b].capacity());
+                data.writeLong(byteSizes[b]);
+            }
+            data.writeInt(blocks);
+            data.flush();
+        }
+    }
+
+    private static long[] histogram(ByteBuffer block) {
+        long[] freq = new long[256];
+        for (int i = block.position(); i < block.limit(); i++) {
+            freq[block.get(i) & 0xFF]++;
+        }
+        return freq;
+    }
+
+    private static void addHistogram(long[] total, long[] part) {
+        for (int c = 0; c < 256; c++) {
+            total[c] += part[c];
+        }
+    }
+
+    private static byte[] encodeBlock(CanonicalCode code, ByteBuffer block) {
+        byte[] data = new byte[block.remaining()];
+        block.duplicate().get(data);
+        long bits = code.bitLength(data, 0, data.length);
+        ByteBuffer encoded = ByteBuffer.allocate(Math.toIntExact((bits + 7) / 8));
+        code.encode(data, 0, data.length, encoded);
+        return encoded.array();
+    }
+
+    // Однопроходное адаптивное кодирование (FGK) для потоков неизвестной длины: дерево
+    // перестраивается после каждого символа, поэтому ни частоты, ни весь текст заранее не нужны.
+    // Память постоянная: дерево на 515 узлов и буфер вывода. Новый символ кодируется путем
+    // к NYT и 9 битами самого символа, конец потока - так же символом EOF = 256.
+    // Парный декодер - B_Huffman.decodeAdaptive.
+    void encodeAdaptive(InputStream in, OutputStream out) throws IOException {
+        AdaptiveModel model = new AdaptiveModel();
+        BitOutput bits = new BitOutput(out);
+        byte[] input = new byte[1 << 16];
+        int[] path = new int[AdaptiveModel.MAX_NODES];
+        int read;
+        while ((read = in.read(input)) >= 0) {
+            for (int i = 0; i < read; i++) {
+                int symbol = input[i] & 0xFF;
+                encodeAdaptiveSymbol(model, symbol, path, bits);
+                model.update(symbol);
+            }
+        }
+        encodeAdaptiveSymbol(model, AdaptiveModel.EOF, path, bits);
+        bits.flush();
+    }
+
+    private static void encodeAdaptiveSymbol(AdaptiveModel model, int symbol, int[] path, BitOutput bits) throws IOException {
+        int node = model.leaf[symbol] >= 0 ? model.leaf[symbol] : model.nyt;
+        for (int d = model.pathToRoot(node, path) - 1; d >= 0; d--) {
+            bits.writeBit(path[d]);
+        }
+        if (node == model.nyt) {
+            // новый символ: 9 бит как есть
+            for (int bit = AdaptiveModel.SYMBOL_BITS - 1; bit >= 0; bit--) {
+                bits.writeBit((symbol >>> bit) & 1);
+            }
+        }
+    }
+
+    // Побитовая запись в поток через собственный буфер; flush дополняет последний байт нулями
+    private static final class BitOutput {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[1 << 16];
+        private int pos;
+        private int current;
+        private int bitCount;
+
+        BitOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeBit(int bit) throws IOException {
+            current = current << 1 | bit;
+            if (++bitCount == 8) {
+                buffer[pos++] = (byte) current;
+                current = 0;
+                bitCount = 0;
+                if (pos == buffer.length) {
+                    out.write(buffer, 0, pos);
+                    pos = 0;
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            if (bitCount > 0) {
+                buffer[pos++] = (byte) (current << (8 - bitCount));
+                current = 0;
+                bitCount = 0;
+            }
+            out.write(buffer, 0, pos);
+            pos = 0;
+            out.flush();
+        }
+    }
+
+    // Дерево адаптивного кода Хаффмана (алгоритм FGK) на массивах. Номер узла - его индекс,
+    // веса не убывают с номером (свойство соседей), корень - последний индекс. Перестановка
+    // узлов меняет местами их содержимое (символ, детей), а ссылки на родителя остаются на местах.
+    static final class AdaptiveModel {
+        static final int EOF = 256;
+        static final int SYMBOL_BITS = 9;
+        static final int MAX_NODES = 2 * (EOF + 2) - 1;   // 257 символов + NYT
+        static final int ROOT = MAX_NODES - 1;
+        private static final int INTERNAL = -1;
+        private static final int NYT = -2;
+
+        final long[] weight = new long[MAX_NODES + 1];  // weight[MAX_NODES] = -1 - граница за корнем
+        final int[] parent = new int[MAX_NODES];
+        final int[] left = new int[MAX_NODES];
+        final int[] right = new int[MAX_NODES];
+        final int[] symbol = new int[MAX_NODES];    // символ листа, INTERNAL или NYT
+        final int[] leaf = new int[EOF + 1];        // узел символа, -1 если еще не встречался
+        int nyt = ROOT;
+        // Узлы одного веса идут подряд по номерам и образуют блок. Для каждого узла хранится
+        // номер его блока, для блока - старший узел (лидер), так что лидер находится за O(1)
+        // без прохода по блоку. Свободные номера блоков - в стеке
+        private final int[] block = new int[MAX_NODES];
+        private final int[] blockLeader = new int[MAX_NODES];
+        private final int[] freeBlocks = new int[MAX_NODES];
+        private int freeCount;
+
+        AdaptiveModel() {
+            Arrays.fill(leaf, -1);
+            parent[ROOT] = -1;
+            symbol[ROOT] = NYT;
+            weight[MAX_NODES] = -1;
+            // все узлы, включая еще не занятые, начинают в одном блоке веса 0
+            blockLeader[0] = ROOT;
+            for (int b = MAX_NODES - 1; b > 0; b--) {
+                freeBlocks[freeCount++] = b;
+            }
+        }
+
+        boolean isLeaf(int node) {
+            return symbol[node] != INTERNAL;
+        }
+
+        // Биты пути от корня к node в обратном порядке (path[0] - ближний к node), возвращает длину
+        int pathToRoot(int node, int[] path) {
+            int depth = 0;
+            for (int p = parent[node]; p >= 0; node = p, p = parent[p]) {
+                path[depth++] = right[p] == node ? 1 : 0;
+            }
+            return depth;
+        }
+
+        void update(int s) {
+            int q;
+            if (leaf[s] < 0) {
+                // NYT порождает новый NYT и лист символа, сам становится внутренним узлом
+                int old = nyt;
+                int newNyt = old - 2;
+                int newLeaf = old - 1;
+                symbol[old] = INTERNAL;
+                left[old] = newNyt;
+                right[old] = newLeaf;
+                parent[newNyt] = old;
+                parent[newLeaf] = old;
+                symbol[newNyt] = NYT;
+                symbol[newLeaf] = s;
+                leaf[s] = newLeaf;
+                nyt = newNyt;
+                q = newLeaf;
+            } else {
+                q = leaf[s];
+            }
+            while (q >= 0) {
+                // старший по номеру узел того же веса (не родитель q) - с ним меняемся местами
+                int leader = blockLeader[block[q]];
+                int p = parent[q];
+                if (leader == p) {
+                    // брат q - NYT веса 0: q стоит сразу под родителем, оба лидируют в блоке
+                    // и переходят в следующий вес вместе - сначала родитель, потом q
+                    increment(p);
+                    increment(q);
+                    q = parent[p];
+                    continue;
+                }
+                if (leader != q) {
+                    swap(q, leader);
+                    q = leader;
+                }
+                increment(q);
+                q = parent[q];
+            }
+        }
+
+        // Вес лидера блока q растет на 1: q уходит из своего блока (лидером становится q - 1
+        // того же веса) и становится младшим узлом блока нового веса либо открывает новый блок.
+        // q > 0 всегда (NYT не растет), за корнем - граничный вес -1
+        private void increment(int q) {
+            int b = block[q];
+            long w = ++weight[q];
+            if (block[q - 1] == b) {
+                blockLeader[b] = q - 1;
+                if (weight[q + 1] == w) {
+                    block[q] = block[q + 1];
+                } else {
+                    int fresh = freeBlocks[--freeCount];
+                    blockLeader[fresh] = q;
+                    block[q] = fresh;
+                }
+            } else if (weight[q + 1] == w) {
+                freeBlocks[freeCount++] = b;
+                block[q] = block[q + 1];
+            }
+        }
+
+        private void swap(int a, int b) {
+            int t = symbol[a];
+            symbol[a] = symbol[b];
+            symbol[b] = t;
+            t = left[a];
+            left[a] = left[b];
+            left[b] = t;
+            t = right[a];
+            right[a] = right[b];
+            right[b] = t;
+            relink(a);
+            relink(b);
+        }
+
+        private void relink(int node) {
+            if (symbol[node] == INTERNAL) {
+                parent[left[node]] = node;
+                parent[right[node]] = node;
+            } else if (symbol[node] == NYT) {
+                nyt = node;
+            } else {
+                leaf[symbol[node]] = node;
+            }
+        }
+    }
+
+    // Канонический код Хаффмана над байтами: длины и коды хранятся в примитивных таблицах
+    // по 256 элементов, дерево из объектов не строится. Длина кода ограничена MAX_LENGTH,
+    // чтобы любой код помещался в 64-битный накопитель вместе с недописанным остатком.
+    // Формат потока: 256 байт длин кодов, 8 байт числа символов, затем биты (старший бит первым).
+    static final class CanonicalCode {
+        static final int MAX_LENGTH = 32;
+        static final int HEADER_BYTES = 256 + 8;
+
+        final byte[] lengths;   // длина кода символа, 0 - символ не встречается
+        final int[] codes;      // код символа, выровнен вправо; 32-битный код - беззнаковый (& 0xFFFFFFFFL)
+
+        private CanonicalCode(byte[] lengths) {
+            this.lengths = lengths;
+            this.codes = assignCodes(lengths);
+        }
+
+        static CanonicalCode of(byte[] data, int from, int to) {
+            long[] freq = new long[256];
+            for (int i = from; i < to; i++) {
+                freq[data[i] & 0xFF]++;
+            }
+            return fromFrequencies(freq);
+        }
+
+        static CanonicalCode fromFrequencies(long[] freq) {
+            return new CanonicalCode(buildLengths(freq));
+        }
+
+        static CanonicalCode fromLengths(byte[] lengths) {
+            if (lengths.length != 256) throw new IllegalArgumentException("expected 256 code lengths");
+            return new CanonicalCode(lengths.clone());
+        }
+
+        // Длина закодированного текста в битах
+        long bitLength(byte[] data, int from, int to) {
+            long bits = 0;
+            for (int i = from; i < to; i++) {
+                bits += lengths[data[i] & 0xFF];
+            }
+            return bits;
+        }
+
+        // Заголовок и биты data[from..to) в поток; буфер сбрасывается по мере заполнения
+        void writeTo(byte[] data, int from, int to, OutputStream out) throws IOException {
+            DataOutputStream header = new DataOutputStream(out);
+            header.write(lengths);
+            header.writeLong(to - from);
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            long acc = 0;
+            int accBits = 0;
+            for (int i = from; i < to; i++) {
+                int symbol = data[i] & 0xFF;
+                acc = (acc << lengths[symbol]) | (codes[symbol] & 0xFFFFFFFFL);
+                accBits += lengths[symbol];
+                if (accBits >= 32) {
+                    accBits -= 32;
+                    buffer.putInt((int) (acc >>> accBits));
+                    if (buffer.remaining() < 4) {
+                        out.write(buffer.array(), 0, buffer.position());
+                        buffer.clear();
+                    }
+                }
+            }
+            while (accBits >= 8) {
+                accBits -= 8;
+                buffer.put((byte) (acc >>> accBits));
+            }
+            if (accBits > 0) {
+                buffer.put((byte) (acc << (8 - accBits)));
+            }
+            out.write(buffer.array(), 0, buffer.position());
+            out.flush();
+        }
+
+        // Все биты data[from..to) в buffer с дополнением последнего байта нулями; возвращает число бит
+        long encode(byte[] data, int from, int to, ByteBuffer buffer) {
+            long bits = 0;
+            long acc = 0;
+            int accBits = 0;
+            for (int i = from; i < to; i++) {
+                int symbol = data[i] & 0xFF;
+                acc = (acc << lengths[symbol]) | (codes[symbol] & 0xFFFFFFFFL);
+                accBits += lengths[symbol];
+                bits += lengths[symbol];
+                if (accBits >= 32) {
+                    accBits -= 32;
+                    buffer.putInt((int) (acc >>> accBits));
+                }
+            }
+            while (accBits >= 8) {
+                accBits -= 8;
+                buffer.put((byte) (acc >>> accBits));
+            }
+            if (accBits > 0) {
+                buffer.put((byte) (acc << (8 - accBits)));
+            }
+            return bits;
+        }
+
+        // Длины кодов по частотам: листья сортируются по частоте, дальше две очереди
+        // (листья и внутренние узлы, которые появляются уже упорядоченными), глубина - через parent
+        private static byte[] buildLengths(long[] freq) {
+            byte[] lengths = new byte[256];
+            long[] leaves = new long[256];      // частота << 8 | символ
+            int n = 0;
+            for (int c = 0; c < 256; c++) {
+                if (freq[c] < 0 || freq[c] >= (1L << 55)) throw new IllegalArgumentException("bad frequency " + freq[c]);
+                if (freq[c] > 0) leaves[n++] = freq[c] << 8 | c;
+            }
+            if (n == 0) return lengths;
+            Arrays.sort(leaves, 0, n);
+            if (n == 1) {
+                lengths[(int) (leaves[0] & 0xFF)] = 1;
+                return lengths;
+            }
+
+            long[] weight = new long[2 * n - 1];    // узлы: 0..n-1 листья, n..2n-2 внутренние
+            int[] parent = new int[2 * n - 1];
+            for (int i = 0; i < n; i++) weight[i] = leaves[i] >>> 8;
+            int leaf = 0;
+            int inner = n;
+            for (int next = n; next < 2 * n - 1; next++) {
+                int first = (leaf < n && (inner >= next || weight[leaf] <= weight[inner])) ? leaf++ : inner++;
+                int second = (leaf < n && (inner >= next || weight[leaf] <= weight[inner])) ? leaf++ : inner++;
+                weight[next] = weight[first] + weight[second];
+                parent[first] = next;
+                parent[second] = next;
+            }
+            int[] depth = new int[2 * n - 1];
+            int[] count = new int[Math.max(MAX_LENGTH, n) + 1];
+            for (int x = 2 * n - 3; x >= 0; x--) {
+                depth[x] = depth[parent[x]] + 1;
+                if (x < n) count[depth[x]]++;
+            }
+
+            // ограничение длины (как в JPEG, приложение K): пару самых длинных кодов
+            // поднимаем на уровень выше, а один более короткий код удлиняем
+            for (int len = count.length - 1; len > MAX_LENGTH; len--) {
+                while (count[len] > 0) {
+                    int j = len - 2;
+                    while (count[j] == 0) j--;
+                    count[len] -= 2;
+                    count[len - 1]++;
+                    count[j + 1] += 2;
+                    count[j]--;
+                }
+            }
+
+            // самые редкие символы (начало leaves) получают самые длинные коды
+            int i = 0;
+            for (int len = MAX_LENGTH; len >= 1; len--) {
+                for (int k = 0; k < count[len]; k++) {
+                    lengths[(int) (leaves[i++] & 0xFF)] = (byte) len;
+                }
+            }
+            return lengths;
+        }
+
+        // Канонические коды: по возрастанию (длина, символ), каждый следующий код на 1 больше,
+        // при переходе к большей длине сдвигается влево
+        private static int[] assignCodes(byte[] lengths) {
+            int[] count = new int[MAX_LENGTH + 1];
+            for (byte len : lengths) {
+                if (len < 0 || len > MAX_LENGTH) throw new IllegalArgumentException("bad code length " + len);
+                count[len]++;
+            }
+            count[0] = 0;
+            int[] next = new int[MAX_LENGTH + 2];
+            int code = 0;
+            for (int len = 1; len <= MAX_LENGTH; len++) {
+                code = (code + count[len - 1]) << 1;
+                next[len] = code;
+            }
+            int[] codes = new int[256];
+            for (int c = 0; c < 256; c++) {
+                int len = lengths[c];
+                if (len > 0) codes[c] = next[len]++;
+            }
+            return codes;
+        }
+    }
+
     // абстрактный класс элемент дерева
     abstract class Node implements Comparable<Node> {
         private final int frequence; // частота символов
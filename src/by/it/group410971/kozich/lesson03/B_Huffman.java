@@ -1,21 +1,77 @@
 package by.it.group410971.kozich.lesson03;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 // Lesson 3. B_Huffman.
 // Восстановите строку по её коду и беспрефиксному коду символов.
 
 public class B_Huffman {
 
-    public static void main(String[] args) throws FileNotFoundException {
+    public static void main(String[] args) throws IOException {
         InputStream inputStream = B_Huffman.class.getResourceAsStream("dataB.txt");
         B_Huffman instance = new B_Huffman();
         String result = instance.decode(inputStream);
         System.out.println(result);
+
+        // скорость: один и тот же текст через строку из '0'/'1' и через упакованный поток
+        byte[] text = new byte[1_000_000];
+        Random random = new Random(42);
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) ('a' + Math.min(25, (int) Math.abs(random.nextGaussian() * 6)));
+        }
+        A_Huffman.CanonicalCode code = A_Huffman.CanonicalCode.of(text, 0, text.length);
+        StringBuilder sb = new StringBuilder();
+        int k = 0;
+        for (int c = 0; c < 256; c++) {
+            if (code.lengths[c] > 0) k++;
+        }
+        sb.append(k).append(' ').append(code.bitLength(text, 0, text.length)).append('\n');
+        for (int c = 0; c < 256; c++) {
+            if (code.lengths[c] > 0) sb.append((char) c).append(": ").append(codeString(code, c)).append('\n');
+        }
+        for (byte b : text) {
+            sb.append(codeString(code, b & 0xFF));
+        }
+        ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        code.writeTo(text, 0, text.length, packed);
+
+        long startTime = System.nanoTime();
+        String slow = instance.decode(new ByteArrayInputStream(sb.toString().getBytes(StandardCharsets.ISO_8859_1)));
+        long slowTime = System.nanoTime() - startTime;
+        byte[] fast = null;
+        long fastTime = 0;
+        for (int round = 0; round < 5; round++) {   // первые проходы - прогрев JIT
+            startTime = System.nanoTime();
+            fast = instance.decodePacked(ByteBuffer.wrap(packed.toByteArray()));
+            fastTime = System.nanoTime() - startTime;
+        }
+        System.out.printf("строка: %.1f МБ/с, таблица: %.1f МБ/с, совпадают: %b\n",
+                text.length * 1e3 / slowTime, text.length * 1e3 / fastTime,
+                slow.equals(new String(fast, StandardCharsets.ISO_8859_1)));
+    }
+
+    private static String codeString(A_Huffman.CanonicalCode code, int symbol) {
+        StringBuilder sb = new StringBuilder();
+        for (int bit = code.lengths[symbol] - 1; bit >= 0; bit--) {
+            sb.append((code.codes[symbol] & 0xFFFFFFFFL) >>> bit & 1);
+        }
+        return sb.toString();
     }
 
     String decode(InputStream inputStream) throws FileNotFoundException {
@@ -50,4 +106,274 @@ public class B_Huffman {
 
         return result.toString();
     }
+
+    // Декодирование упакованного потока A_Huffman.CanonicalCode (заголовок + биты)
+    byte[] decodePacked(ByteBuffer in) {
+        byte[] lengths = new byte[256];
+        in.get(lengths);
+        long count = in.getLong();
+        if (count < 0 || count > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("bad symbol count " + count);
+        byte[] out = new byte[(int) count];
+        new TableDecoder(lengths).decode(in, out, 0, out.length);
+        return out;
+    }
+
+    // Параллельное декодирование потока A_Huffman.compressFile целиком в память:
+    // индекс в конце потока дает смещения блоков, блоки декодируются независимо одним общим декодером
+    byte[] decodeBlocks(ByteBuffer in) {
+        int base = in.position();
+        int end = in.limit();
+        if (end - base < 256 + 4) throw new IllegalArgumentException("bad block index");
+        int blocks = in.getInt(end - 4);
+        // в long: испорченное число блоков не должно переполнить 16 * blocks до проверки
+        long indexEnd = end - 4 - 16L * blocks;
+        if (blocks < 0 || indexEnd < base + 256) throw new IllegalArgumentException("bad block index");
+        int indexStart = (int) indexEnd;
+        byte[] lengths = new byte[256];
+        for (int c = 0; c < 256; c++) {
+            lengths[c] = in.get(base + c);
+        }
+        int[] inOffset = new int[blocks];
+        int[] inSize = new int[blocks];
+        int[] outOffset = new int[blocks];
+        int[] symbols = new int[blocks];
+        long inPos = base + 256;
+        long outPos = 0;
+        for (int b = 0; b < blocks; b++) {
+            long count = in.getLong(indexStart + 16 * b);
+            long size = in.getLong(indexStart + 16 * b + 8);
+            if (count < 0 || size < 0 || size > indexStart - inPos || outPos + count > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("bad block " + b);
+            }
+            inOffset[b] = (int) inPos;
+            inSize[b] = (int) size;
+            outOffset[b] = (int) outPos;
+            symbols[b] = (int) count;
+            inPos += size;
+            outPos += count;
+        }
+
+        TableDecoder decoder = new TableDecoder(lengths);
+        byte[] out = new byte[(int) outPos];
+        IntStream.range(0, blocks).parallel().forEach(b -> {
+            ByteBuffer block = in.duplicate();
+            block.limit(inOffset[b] + inSize[b]).position(inOffset[b]);
+            decoder.decode(block, out, outOffset[b], symbols[b]);
+        });
+        return out;
+    }
+
+    // То же для файла любого размера: блоки отображаются в память по одному и декодируются
+    // параллельно волнами, результат пишется в поток по порядку
+    void decompressFile(Path input, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long end = channel.size();
+            if (end < 256 + 4) throw new IllegalArgumentException("bad block index");
+            ByteBuffer tail = ByteBuffer.allocate(4);
+            readFully(channel, tail, end - 4);
+            int blocks = tail.getInt(0);
+            long indexStart = end - 4 - 16L * blocks;
+            if (blocks < 0 || indexStart < 256) throw new IllegalArgumentException("bad block index");
+            // индекс читается в память целиком: больше 2^27 блоков в один буфер не помещается
+            if (blocks > Integer.MAX_VALUE / 16) throw new IllegalArgumentException("block index too large: " + blocks + " blocks");
+            ByteBuffer header = ByteBuffer.allocate(256);
+            readFully(channel, header, 0);
+            ByteBuffer index = ByteBuffer.allocate(Math.multiplyExact(16, blocks));
+            readFully(channel, index, indexStart);
+
+            TableDecoder decoder = new TableDecoder(header.array());
+            long[] inOffset = new long[blocks];
+            long inPos = 256;
+            for (int b = 0; b < blocks; b++) {
+                long size = index.getLong(16 * b + 8);
+                if (size < 0 || size > indexStart - inPos) throw new IllegalArgumentException("bad block " + b);
+                inOffset[b] = inPos;
+                inPos += size;
+            }
+            int wave = Math.max(1, 2 * ForkJoinPool.getCommonPoolParallelism());
+            for (int start = 0; start < blocks; start += wave) {
+                int first = start;
+                byte[][] decoded = new byte[Math.min(wave, blocks - start)][];
+                IOException[] error = new IOException[1];
+                IntStream.range(0, decoded.length).parallel().forEach(i -> {
+                    int b = first + i;
+                    try {
+                        ByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, inOffset[b], index.getLong(16 * b + 8));
+                        long count = index.getLong(16 * b);
+                        if (count < 0 || count > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("bad block " + b);
+                        decoded[i] = new byte[(int) count];
+                        decoder.decode(block, decoded[i], 0, decoded[i].length);
+                    } catch (IOException e) {
+                        synchronized (error) {
+                            error[0] = e;
+                        }
+                    }
+                });
+                if (error[0] != null) throw error[0];
+                for (byte[] block : decoded) {
+                    out.write(block);
+                }
+            }
+            out.flush();
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("unexpected end of file");
+        }
+        buffer.flip();
+    }
+
+    // Декодер потока A_Huffman.encodeAdaptive: то же дерево FGK обновляется после каждого
+    // символа точно так же, как у кодера. Память постоянная, читает до символа EOF
+    void decodeAdaptive(InputStream in, OutputStream out) throws IOException {
+        A_Huffman.AdaptiveModel model = new A_Huffman.AdaptiveModel();
+        BitInput bits = new BitInput(in);
+        byte[] output = new byte[1 << 16];
+        int outPos = 0;
+        while (true) {
+            int node = A_Huffman.AdaptiveModel.ROOT;
+            while (!model.isLeaf(node)) {
+                node = bits.readBit() == 0 ? model.left[node] : model.right[node];
+            }
+            int symbol;
+            if (node == model.nyt) {
+                symbol = 0;
+                for (int i = 0; i < A_Huffman.AdaptiveModel.SYMBOL_BITS; i++) {
+                    symbol = symbol << 1 | bits.readBit();
+                }
+            } else {
+                symbol = model.symbol[node];
+            }
+            if (symbol == A_Huffman.AdaptiveModel.EOF) break;
+            output[outPos++] = (byte) symbol;
+            if (outPos == output.length) {
+                out.write(output, 0, outPos);
+                outPos = 0;
+            }
+            model.update(symbol);
+        }
+        out.write(output, 0, outPos);
+        out.flush();
+    }
+
+    // Побитовое чтение из потока через собственный буфер
+    private static final class BitInput {
+        private final InputStream in;
+        private final byte[] buffer = new byte[1 << 16];
+        private int pos;
+        private int limit;
+        private int current;
+        private int bitsLeft;
+
+        BitInput(InputStream in) {
+            this.in = in;
+        }
+
+        int readBit() throws IOException {
+            if (bitsLeft == 0) {
+                if (pos == limit) {
+                    limit = in.read(buffer);
+                    pos = 0;
+                    if (limit <= 0) throw new IOException("unexpected end of adaptive stream");
+                }
+                current = buffer[pos++];
+                bitsLeft = 8;
+            }
+            return (current >>> --bitsLeft) & 1;
+        }
+    }
+
+    // Табличный декодер канонического кода: одна проба таблицы на TABLE_BITS бит потока
+    // сразу дает символ и длину его кода. Коды длиннее TABLE_BITS (редкие символы)
+    // дочитываются по каноническим границам first/count для каждой длины.
+    static final class TableDecoder {
+        static final int TABLE_BITS = 11;
+
+        private final int[] table = new int[1 << TABLE_BITS];     // символ << 8 | длина, 0 - длинный код
+        private final long[] firstCode = new long[A_Huffman.CanonicalCode.MAX_LENGTH + 1];   // беззнаковые коды
+        private final int[] firstIndex = new int[A_Huffman.CanonicalCode.MAX_LENGTH + 1];
+        private final int[] lengthCount = new int[A_Huffman.CanonicalCode.MAX_LENGTH + 1];
+        private final int[] sortedSymbols;  // символы по возрастанию (длина, символ)
+
+        TableDecoder(byte[] lengths) {
+            A_Huffman.CanonicalCode code = A_Huffman.CanonicalCode.fromLengths(lengths);
+            int maxLength = A_Huffman.CanonicalCode.MAX_LENGTH;
+            int symbols = 0;
+            for (int c = 0; c < 256; c++) {
+                if (lengths[c] > 0) {
+                    lengthCount[lengths[c]]++;
+                    symbols++;
+                }
+            }
+            sortedSymbols = new int[symbols];
+            int index = 0;
+            for (int len = 1; len <= maxLength; len++) {
+                firstIndex[len] = index;
+                firstCode[len] = -1;
+                for (int c = 0; c < 256; c++) {
+                    if (lengths[c] != len) continue;
+                    if (firstCode[len] == -1) firstCode[len] = code.codes[c] & 0xFFFFFFFFL;
+                    sortedSymbols[index++] = c;
+                    if (len <= TABLE_BITS) {
+                        int shift = TABLE_BITS - len;
+                        int base = code.codes[c] << shift;
+                        int entry = c << 8 | len;
+                        for (int i = 0; i < (1 << shift); i++) {
+                            table[base + i] = entry;
+                        }
+                    }
+                }
+            }
+        }
+
+        // Декодирует count символов из in в out[from..from+count); позиция in остается
+        // сразу за последним байтом, биты которого использованы
+        void decode(ByteBuffer in, byte[] out, int from, int count) {
+            int to = from + count;
+            long bits = 0;      // непрочитанные биты, выровнены влево
+            int bitCount = 0;
+            int virtualBytes = 0;   // нулевые байты, дописанные за концом буфера
+            for (int i = from; i < to; i++) {
+                // в запасе должно быть не меньше MAX_LENGTH = 32 бит; за концом буфера - нули
+                if (bitCount < 32) {
+                    if (in.remaining() >= 4) {
+                        bits |= (in.getInt() & 0xFFFFFFFFL) << (32 - bitCount);
+                        bitCount += 32;
+                    } else {
+                        while (bitCount < 32) {
+                            if (in.hasRemaining()) {
+                                bits |= (long) (in.get() & 0xFF) << (56 - bitCount);
+                            } else {
+                                virtualBytes++;
+                            }
+                            bitCount += 8;
+                        }
+                    }
+                }
+                int entry = table[(int) (bits >>> (64 - TABLE_BITS))];
+                int len;
+                if (entry != 0) {
+                    out[i] = (byte) (entry >>> 8);
+                    len = entry & 0xFF;
+                } else {
+                    len = TABLE_BITS + 1;
+                    while (true) {
+                        if (len > A_Huffman.CanonicalCode.MAX_LENGTH) throw new IllegalArgumentException("bad code");
+                        long offset = (bits >>> (64 - len)) - firstCode[len];
+                        if (offset >= 0 && offset < lengthCount[len]) {
+                            out[i] = (byte) sortedSymbols[firstIndex[len] + (int) offset];
+                            break;
+                        }
+                        len++;
+                    }
+                }
+                bits <<= len;
+                bitCount -= len;
+            }
+            int unread = bitCount / 8 - virtualBytes;
+            if (unread > 0) in.position(in.position() - unread);
+        }
+    }
 }
@@ -1,10 +1,11 @@
 package by.it.group410971.kozich.lesson03;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
 
 // Lesson 3. C_Heap.
 // Задача: построить max-кучу = пирамиду = бинарное сбалансированное дерево на массиве.
@@ -16,92 +17,585 @@ public class C_HeapMax {
         InputStream stream = C_HeapMax.class.getResourceAsStream("dataC.txt");
         C_HeapMax instance = new C_HeapMax();
         System.out.println("MAX=" + instance.findMaxValue(stream));
+
+        // скорость: 10M операций вставки/извлечения без печати
+        int n = 10_000_000;
+        MaxHeap heap = new MaxHeap();
+        long startTime = System.currentTimeMillis();
+        long seed = 42;
+        long checksum = 0;
+        for (int i = 0; i < n; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            if ((seed >>> 62) != 0 || heap.isEmpty()) {
+                heap.insert(seed >>> 20);
+            } else {
+                checksum += heap.extractMax();
+            }
+        }
+        long time = System.currentTimeMillis() - startTime;
+        System.out.printf("%d операций за %d мс (%.1f M/с), checksum=%d\n", n, time, n / 1e3 / Math.max(1, time), checksum);
+
+        // сравнение реализаций на трех профилях нагрузки (первый круг - прогрев JIT)
+        for (int round = 0; round < 2; round++) {
+            for (String name : new String[]{"binary", "4-ary", "8-ary", "pairing"}) {
+                System.out.printf("%-8s вставки: %4d мс, извлечения: %4d мс, смесь: %4d мс\n", name,
+                        benchmark(name, 4_000_000, 0.9), benchmark(name, 4_000_000, 0.0), benchmark(name, 4_000_000, 0.5));
+            }
+        }
+
+        // слияние парных куч над общим пулом: 1000 куч по 4000 элементов в одну, каждое слияние - O(1)
+        NodeArena arena = new NodeArena();
+        PairingMaxHeap[] parts = new PairingMaxHeap[1000];
+        for (int h = 0; h < parts.length; h++) {
+            parts[h] = new PairingMaxHeap(arena);
+            for (int i = 0; i < 4000; i++) {
+                seed = seed * 6364136223846793005L + 1442695040888963407L;
+                parts[h].insert(seed >>> 16);
+            }
+        }
+        startTime = System.currentTimeMillis();
+        for (int h = 1; h < parts.length; h++) {
+            parts[0].meld(parts[h]);
+        }
+        time = System.currentTimeMillis() - startTime;
+        System.out.printf("pairing: слияние %d куч в кучу из %d элементов за %d мс\n", parts.length, parts[0].size(), time);
+    }
+
+    static LongHeap newHeap(String name) {
+        switch (name) {
+            case "binary":
+                return new MaxHeap();
+            case "4-ary":
+                return new DaryMaxHeap(4);
+            case "8-ary":
+                return new DaryMaxHeap(8);
+            case "pairing":
+                return new PairingMaxHeap();
+            default:
+                throw new IllegalArgumentException("unknown heap " + name);
+        }
+    }
+
+    // n операций после предварительного заполнения n/2 элементами; insertShare - доля вставок
+    // (0 - только извлечения, тогда сначала вставляется n элементов)
+    private static long benchmark(String name, int n, double insertShare) {
+        LongHeap heap = newHeap(name);
+        long seed = 7;
+        int prefill = insertShare == 0 ? n : n / 2;
+        for (int i = 0; i < prefill; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            heap.insert(seed >>> 16);
+        }
+        long threshold = (long) (insertShare * (1L << 20));
+        long startTime = System.currentTimeMillis();
+        long checksum = 0;
+        for (int i = 0; i < n; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            if ((seed >>> 44) < threshold || heap.isEmpty()) {
+                heap.insert(seed >>> 16);
+            } else {
+                checksum += heap.extractMax();
+            }
+        }
+        long time = System.currentTimeMillis() - startTime;
+        if (checksum == 42) System.out.print("");  // не даем JIT выбросить цикл
+        return time;
+    }
+
+    // Общий интерфейс max-куч на long: реализации выбираются под профиль нагрузки
+    interface LongHeap {
+        void insert(long value);
+
+        // Извлекает максимум; NoSuchElementException на пустой куче
+        long extractMax();
+
+        long peekMax();
+
+        int size();
+
+        default boolean isEmpty() {
+            return size() == 0;
+        }
     }
 
     // эта процедура читает данные из файла, ее можно не менять.
     Long findMaxValue(InputStream stream) {
-        Long maxValue = 0L;
+        return findMaxValue(stream, true);
+    }
+
+    // Команды разбираются прямо из байтов потока (без строк, split и toLowerCase):
+    // слова команд сравниваются целиком без учета регистра, аргумент insert берется только из своей строки.
+    // print = false - тихий режим без вывода извлеченных значений
+    long findMaxValue(InputStream stream, boolean print) {
+        long maxValue = 0L;
         MaxHeap heap = new MaxHeap();
-        Scanner scanner = new Scanner(stream);
-        Integer count = scanner.nextInt();
-        scanner.nextLine(); // пропускаем остаток строки после числа
-
-        for (int i = 0; i < count; ) {
-            if (!scanner.hasNextLine()) break; // защита от отсутствия строк
-            String s = scanner.nextLine().trim();
-            if (s.equalsIgnoreCase("extractMax")) {
-                Long res = heap.extractMax();
-                if (res != null && res > maxValue) maxValue = res;
-                System.out.println(res);
-                i++;
-            } else if (s.toLowerCase().startsWith("insert")) {
-                String[] p = s.split(" ");
-                if (p.length == 2) {
-                    heap.insert(Long.parseLong(p[1]));
+        CommandReader reader = new CommandReader(stream);
+        long count = reader.nextLong();
+        reader.skipLine(); // пропускаем остаток строки после числа
+        for (long i = 0; i < count; ) {
+            int command = reader.nextCommand();
+            if (command < 0) break; // защита от отсутствия строк
+            if (command == 'e') {
+                if (heap.isEmpty()) {
+                    if (print) System.out.println("null");
+                } else {
+                    long res = heap.extractMax();
+                    if (res > maxValue) maxValue = res;
+                    if (print) System.out.println(res);
                 }
                 i++;
+            } else if (command == 'i') {
+                // как и раньше: Insert без аргумента (или с лишними словами) считается, но не вставляет
+                if (reader.hasValue()) heap.insert(reader.value());
+                i++;
             }
         }
         return maxValue;
     }
 
-    private class MaxHeap {
-        private List<Long> heap = new ArrayList<>();
+    // Разбор команд из байтового буфера потока без создания объектов на команду
+    static final class CommandReader {
+        private static final String EXTRACT = "extractmax";
+        private static final String INSERT = "insert";
 
-        // Просеивание вниз (siftDown) - корректируем элемент с индексом i вниз по дереву
-        private void siftDown(int i) {
-            int size = heap.size();
-            while (true) {
-                int left = 2 * i + 1;
-                int right = 2 * i + 2;
-                int largest = i;
+        private final InputStream stream;
+        private final byte[] buffer = new byte[1 << 16];
+        private int pos;
+        private int limit;
+        private boolean hasValue;
+        private long value;
+
+        CommandReader(InputStream stream) {
+            this.stream = stream;
+        }
 
-                if (left < size && heap.get(left) > heap.get(largest)) {
-                    largest = left;
+        private int peek() {
+            if (pos == limit) {
+                try {
+                    limit = stream.read(buffer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-                if (right < size && heap.get(right) > heap.get(largest)) {
-                    largest = right;
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
                 }
-                if (largest == i) break;
+            }
+            return buffer[pos] & 0xFF;
+        }
+
+        // Следующая команда: 'e' - строка из одного слова extractMax, 'i' - строка, начинающаяся
+        // словом insert (аргумент - hasValue()/value(), только из этой же строки); слова сравниваются
+        // целиком без учета регистра. Пустые и чужие строки пропускаются, -1 - конец потока
+        int nextCommand() {
+            while (true) {
+                int c = skipBlanks();
+                if (c < 0) return -1;
+                if (c == '\n') {
+                    pos++;
+                    continue;
+                }
+                int word = readWord();
+                if (word == 'e' && atLineEnd()) {
+                    skipLine();
+                    return 'e';
+                }
+                if (word == 'i') {
+                    readArgument();
+                    skipLine();
+                    return 'i';
+                }
+                skipLine();
+            }
+        }
+
+        boolean hasValue() {
+            return hasValue;
+        }
+
+        long value() {
+            return value;
+        }
+
+        // Целое со знаком с текущей позиции, как Long.parseLong: переполнение - NumberFormatException
+        long nextLong() {
+            int c = peek();
+            while (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+                pos++;
+                c = peek();
+            }
+            boolean negative = c == '-';
+            if (negative || c == '+') {
+                pos++;
+                c = peek();
+            }
+            if (c < '0' || c > '9') throw new NumberFormatException("number expected");
+            // копим отрицательное значение: его диапазон на единицу шире
+            long value = 0;
+            while (c >= '0' && c <= '9') {
+                int digit = c - '0';
+                if (value < (Long.MIN_VALUE + digit) / 10) throw new NumberFormatException("number out of range");
+                value = value * 10 - digit;
+                pos++;
+                c = peek();
+            }
+            if (c > ' ') throw new NumberFormatException("unexpected character: " + (char) c);
+            if (!negative) {
+                if (value == Long.MIN_VALUE) throw new NumberFormatException("number out of range");
+                value = -value;
+            }
+            return value;
+        }
+
+        // Пропускает все до конца строки включительно
+        void skipLine() {
+            int c = peek();
+            while (c >= 0 && c != '\n') {
+                pos++;
+                c = peek();
+            }
+            if (c == '\n') pos++;
+        }
+
+        // Пропускает пробелы внутри строки, возвращает следующий символ ('\n' не пропускается)
+        private int skipBlanks() {
+            int c = peek();
+            while (c == ' ' || c == '\t' || c == '\r') {
+                pos++;
+                c = peek();
+            }
+            return c;
+        }
+
+        private boolean atLineEnd() {
+            int c = skipBlanks();
+            return c < 0 || c == '\n';
+        }
 
-                swap(i, largest);
-                i = largest;
+        // Слово до пробела: 'e' - extractMax, 'i' - insert, 0 - любое другое
+        private int readWord() {
+            int length = 0;
+            boolean extract = true;
+            boolean insert = true;
+            int c = peek();
+            while (c > ' ') {
+                int lower = c >= 'A' && c <= 'Z' ? c | 0x20 : c;
+                extract &= length < EXTRACT.length() && lower == EXTRACT.charAt(length);
+                insert &= length < INSERT.length() && lower == INSERT.charAt(length);
+                length++;
+                pos++;
+                c = peek();
             }
+            if (extract && length == EXTRACT.length()) return 'e';
+            if (insert && length == INSERT.length()) return 'i';
+            return 0;
+        }
+
+        // Аргумент insert: одно число до конца строки, иначе значения нет
+        private void readArgument() {
+            hasValue = false;
+            if (atLineEnd()) return;
+            value = nextLong();
+            hasValue = atLineEnd();
         }
+    }
 
-        // Просеивание вверх (siftUp) - корректируем элемент с индексом i вверх по дереву
-        private void siftUp(int i) {
+    // Max-куча на long[]: никаких Long, дыра вместо обменов при просеивании
+    static final class MaxHeap implements LongHeap {
+        private long[] heap;
+        private int size;
+
+        MaxHeap() {
+            heap = new long[16];
+        }
+
+        // Построение за O(n) по Флойду: просеивание вниз от последнего внутреннего узла к корню
+        MaxHeap(long[] values) {
+            heap = Arrays.copyOf(values, Math.max(16, values.length));
+            size = values.length;
+            for (int i = (size >>> 1) - 1; i >= 0; i--) {
+                siftDown(i, heap[i]);
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long peekMax() {
+            if (size == 0) throw new NoSuchElementException("heap is empty");
+            return heap[0];
+        }
+
+        // Вставка нового элемента
+        @Override
+        public void insert(long value) {
+            if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+            siftUp(size++, value);
+        }
+
+        // Извлечение максимума: дыра из корня спускается к листу по большему ребенку
+        // (одно сравнение на уровень), затем последний элемент всплывает из этой дыры
+        @Override
+        public long extractMax() {
+            if (size == 0) throw new NoSuchElementException("heap is empty");
+            long max = heap[0];
+            long last = heap[--size];
+            if (size > 0) {
+                int hole = 0;
+                int child;
+                while ((child = 2 * hole + 1) < size) {
+                    int right = child + 1;
+                    // ветвление сводится к выбору индекса, а не к переходу
+                    child += (right < size && heap[right] > heap[child]) ? 1 : 0;
+                    heap[hole] = heap[child];
+                    hole = child;
+                }
+                siftUp(hole, last);
+            }
+            return max;
+        }
+
+        // Просеивание вниз (siftDown) - value опускается от позиции i
+        private void siftDown(int i, long value) {
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                child += (right < size && heap[right] > heap[child]) ? 1 : 0;
+                if (value >= heap[child]) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = value;
+        }
+
+        // Просеивание вверх (siftUp) - value поднимается от позиции i
+        private void siftUp(int i, long value) {
             while (i > 0) {
-                int parent = (i - 1) / 2;
-                if (heap.get(i) <= heap.get(parent)) break;
-                swap(i, parent);
+                int parent = (i - 1) >>> 1;
+                if (value <= heap[parent]) break;
+                heap[i] = heap[parent];
                 i = parent;
             }
+            heap[i] = value;
+        }
+    }
+
+    // d-арная неявная куча (d = 2, 4, 8 ...): дерево ниже, а дети узла лежат подряд.
+    // Массив сдвинут на d - 1 ячейку, поэтому группа детей любого узла начинается с индекса,
+    // кратного d, и при d = 8 занимает ровно одну 64-байтную строку кэша (если выровнен сам массив).
+    static final class DaryMaxHeap implements LongHeap {
+        private final int d;
+        private final int shift;    // log2(d)
+        private final int base;     // физический индекс корня
+        private long[] heap;
+        private int size;
+
+        DaryMaxHeap(int d) {
+            if (d < 2 || Integer.bitCount(d) != 1) throw new IllegalArgumentException("d must be a power of two: " + d);
+            this.d = d;
+            this.shift = Integer.numberOfTrailingZeros(d);
+            this.base = d - 1;
+            this.heap = new long[base + 16 * d];
         }
 
-        // Вставка нового элемента
-        void insert(Long value) {
-            heap.add(value);
-            siftUp(heap.size() - 1);
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long peekMax() {
+            if (size == 0) throw new NoSuchElementException("heap is empty");
+            return heap[base];
+        }
+
+        @Override
+        public void insert(long value) {
+            if (base + size == heap.length) heap = Arrays.copyOf(heap, base + 2 * size);
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> shift;
+                long p = heap[base + parent];
+                if (value <= p) break;
+                heap[base + i] = p;
+                i = parent;
+            }
+            heap[base + i] = value;
+        }
+
+        @Override
+        public long extractMax() {
+            if (size == 0) throw new NoSuchElementException("heap is empty");
+            long max = heap[base];
+            long value = heap[base + --size];
+            if (size > 0) {
+                int i = 0;
+                while (true) {
+                    int first = (i << shift) + 1;
+                    if (first >= size) break;
+                    int last = Math.min(first + d, size);
+                    // максимум среди детей - проход по одной строке кэша
+                    int best = first;
+                    long bestValue = heap[base + first];
+                    for (int c = first + 1; c < last; c++) {
+                        long v = heap[base + c];
+                        if (v > bestValue) {
+                            bestValue = v;
+                            best = c;
+                        }
+                    }
+                    if (value >= bestValue) break;
+                    heap[base + i] = bestValue;
+                    i = best;
+                }
+                heap[base + i] = value;
+            }
+            return max;
+        }
+    }
+
+    // Парная куча (pairing heap) на массивах узлов: вставка и слияние - одно сравнение корней,
+    // извлечение - двухпроходное попарное слияние детей корня (амортизированно O(log n)),
+    // без рекурсии. Узлы живут в пуле NodeArena; кучи, созданные над одним пулом, сливаются
+    // за O(1) без копирования узлов.
+    static final class PairingMaxHeap implements LongHeap {
+        private final NodeArena arena;
+        private int root = -1;
+        private int size;
+
+        PairingMaxHeap() {
+            this(new NodeArena());
+        }
+
+        PairingMaxHeap(NodeArena arena) {
+            this.arena = arena;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long peekMax() {
+            if (size == 0) throw new NoSuchElementException("heap is empty");
+            return arena.key[root];
+        }
+
+        @Override
+        public void insert(long value) {
+            int node = arena.allocate(value);
+            root = root < 0 ? node : arena.link(root, node);
+            size++;
         }
 
-        // Извлечение максимума (корня)
-        Long extractMax() {
-            if (heap.isEmpty()) return null;
-            Long max = heap.get(0);
-            Long last = heap.remove(heap.size() - 1);
-            if (!heap.isEmpty()) {
-                heap.set(0, last);
-                siftDown(0);
+        // Переносит все элементы other в эту кучу за O(1): корни сливаются одним сравнением.
+        // Кучи должны делить один пул узлов; other становится пустой и пригодна к повторному использованию
+        void meld(PairingMaxHeap other) {
+            if (other.arena != arena) throw new IllegalArgumentException("heaps do not share a node arena");
+            if (other == this || other.size == 0) return;
+            root = root < 0 ? other.root : arena.link(root, other.root);
+            size += other.size;
+            other.root = -1;
+            other.size = 0;
+        }
+
+        @Override
+        public long extractMax() {
+            if (size == 0) throw new NoSuchElementException("heap is empty");
+            NodeArena arena = this.arena;
+            int[] next = arena.next;    // пул не растет во время извлечения
+            long max = arena.key[root];
+            int first = arena.child[root];
+            arena.release(root);
+            size--;
+
+            // проход слева направо: сливаем соседей парами, пары складываем в стек через next
+            int pairs = -1;
+            while (first >= 0) {
+                int a = first;
+                int b = next[a];
+                if (b < 0) {
+                    next[a] = pairs;
+                    pairs = a;
+                    break;
+                }
+                first = next[b];
+                next[a] = -1;
+                next[b] = -1;
+                int merged = arena.link(a, b);
+                next[merged] = pairs;
+                pairs = merged;
             }
+            // проход справа налево: сливаем пары по очереди в одну кучу
+            int result = pairs;
+            if (result >= 0) {
+                pairs = next[result];
+                next[result] = -1;
+                while (pairs >= 0) {
+                    int following = next[pairs];
+                    next[pairs] = -1;
+                    result = arena.link(result, pairs);
+                    pairs = following;
+                }
+            }
+            root = result;
             return max;
         }
+    }
+
+    // Пул узлов парных куч: ключ, первый ребенок и следующий брат в параллельных массивах.
+    // Освободившиеся узлы переиспользуются через список свободных (связанный через next)
+    static final class NodeArena {
+        private long[] key = new long[16];
+        private int[] child = new int[16];     // первый ребенок, -1 - нет
+        private int[] next = new int[16];      // следующий брат (или следующий свободный узел)
+        private int free = -1;
+        private int used;                      // узлов когда-либо выделено
+
+        private int allocate(long value) {
+            int node;
+            if (free >= 0) {
+                node = free;
+                free = next[node];
+            } else {
+                ensureCapacity(used + 1);
+                node = used++;
+            }
+            key[node] = value;
+            child[node] = -1;
+            next[node] = -1;
+            return node;
+        }
+
+        private void release(int node) {
+            next[node] = free;
+            free = node;
+        }
+
+        // Меньший корень становится первым ребенком большего
+        private int link(int a, int b) {
+            if (key[b] > key[a]) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            next[b] = child[a];
+            child[a] = b;
+            return a;
+        }
 
-        // Вспомогательный метод для обмена элементов
-        private void swap(int i, int j) {
-            Long temp = heap.get(i);
-            heap.set(i, heap.get(j));
-            heap.set(j, temp);
+        private void ensureCapacity(int capacity) {
+            if (capacity <= key.length) return;
+            int length = Math.max(capacity, key.length * 2);
+            key = Arrays.copyOf(key, length);
+            child = Arrays.copyOf(child, length);
+            next = Arrays.copyOf(next, length);
         }
     }
 }
@@ -2,7 +2,18 @@ package by.it.group410971.kozich.lesson03;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
 
 import static org.junit.Assert.assertTrue;
 
@@ -26,6 +37,68 @@ public class Lesson03Test {
         assertTrue("A failed", ok);
     }
 
+    @Test
+    public void checkA_packed() throws Exception {
+        InputStream inputStream = A_Huffman.class.getResourceAsStream("dataA.txt");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new A_Huffman().encodePacked(inputStream, out);
+        byte[] packed = out.toByteArray();
+        int h = A_Huffman.CanonicalCode.HEADER_BYTES;
+        // a: 0, b: 10, c: 110, d: 111 -> 01001100 100111(00)
+        boolean ok = packed.length == h + 2 && packed[h] == (byte) 0x4C && packed[h + 1] == (byte) 0x9C
+                && packed['a'] == 1 && packed['b'] == 2 && packed['c'] == 3 && packed['d'] == 3;
+        assertTrue("A packed failed", ok);
+
+        byte[] data = new byte[100_000];
+        Random random = new Random(3);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (random.nextGaussian() * 20);
+        }
+        A_Huffman.CanonicalCode code = A_Huffman.CanonicalCode.of(data, 0, data.length);
+        ByteBuffer buffer = ByteBuffer.allocate(data.length * 4);
+        long bits = code.encode(data, 0, data.length, buffer);
+        out.reset();
+        code.writeTo(data, 0, data.length, out);
+        ok = bits == code.bitLength(data, 0, data.length) && out.size() == h + buffer.position()
+                && Arrays.equals(Arrays.copyOfRange(out.toByteArray(), h, out.size()),
+                Arrays.copyOf(buffer.array(), buffer.position()));
+        assertTrue("A packed failed 2", ok);
+
+        // частоты Фибоначчи дают дерево глубже MAX_LENGTH - длины должны быть ограничены
+        long[] freq = new long[256];
+        freq[0] = 1;
+        freq[1] = 1;
+        for (int c = 2; c < 50; c++) freq[c] = freq[c - 1] + freq[c - 2];
+        A_Huffman.CanonicalCode deep = A_Huffman.CanonicalCode.fromFrequencies(freq);
+        double kraft = 0;
+        for (int c = 0; c < 256; c++) {
+            ok = deep.lengths[c] <= A_Huffman.CanonicalCode.MAX_LENGTH && (c < 50) == (deep.lengths[c] > 0);
+            assertTrue("A length limit failed", ok);
+            if (deep.lengths[c] > 0) kraft += Math.pow(2, -deep.lengths[c]);
+        }
+        assertTrue("A kraft failed", kraft == 1.0);
+
+        // коды длины 32 (включая 0xFFFFFFFF) должны проходить кодирование и декодирование
+        int longest = 0;
+        for (int c = 0; c < 50; c++) {
+            if (deep.lengths[c] > deep.lengths[longest]) longest = c;
+        }
+        assertTrue("A deep code too short", deep.lengths[longest] == A_Huffman.CanonicalCode.MAX_LENGTH);
+        byte[] deepData = new byte[2000];
+        for (int i = 0; i < deepData.length; i++) {
+            deepData[i] = (byte) (i < 6 ? new int[]{44, 15, 44, 15, 0, 15}[i] : random.nextInt(50));
+        }
+        out.reset();
+        deep.writeTo(deepData, 0, deepData.length, out);
+        byte[] written = out.toByteArray();
+        ok = Arrays.equals(deepData, new B_Huffman().decodePacked(ByteBuffer.wrap(written)));
+        buffer = ByteBuffer.allocate(deepData.length * 4 + 8);
+        deep.encode(deepData, 0, deepData.length, buffer);
+        ok = ok && Arrays.equals(Arrays.copyOf(buffer.array(), buffer.position()),
+                Arrays.copyOfRange(written, h, written.length));
+        assertTrue("A 32-bit code round trip failed", ok);
+    }
+
     @Test
     public void checkB() throws Exception {
         InputStream inputStream = B_Huffman.class.getResourceAsStream("dataB.txt");
@@ -35,6 +108,180 @@ public class Lesson03Test {
         assertTrue("B failed", ok);
     }
 
+    @Test
+    public void checkB_table() throws Exception {
+        B_Huffman instance = new B_Huffman();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new A_Huffman().encodePacked(A_Huffman.class.getResourceAsStream("dataA.txt"), out);
+        byte[] result = instance.decodePacked(ByteBuffer.wrap(out.toByteArray()));
+        assertTrue("B table failed", new String(result, "US-ASCII").equals("abacabad"));
+
+        // глубокий код (длинные коды идут мимо таблицы) и хвост буфера после потока
+        byte[] data = new byte[50_000];
+        Random random = new Random(5);
+        for (int i = 0; i < data.length; i++) {
+            int c = 0;
+            while (c < 40 && random.nextBoolean()) c++;
+            data[i] = (byte) c;
+        }
+        A_Huffman.CanonicalCode code = A_Huffman.CanonicalCode.of(data, 0, data.length);
+        out.reset();
+        code.writeTo(data, 0, data.length, out);
+        out.write(new byte[]{1, 2, 3});
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+        result = instance.decodePacked(in);
+        boolean ok = Arrays.equals(result, data) && in.remaining() == 3;
+        assertTrue("B table failed 2", ok);
+    }
+
+    @Test
+    public void checkB_blocks() throws Exception {
+        byte[] data = new byte[300_000];
+        Random random = new Random(9);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (random.nextGaussian() * 30);
+        }
+        Path input = Files.createTempFile("huffman", ".bin");
+        Path packed = Files.createTempFile("huffman", ".pack");
+        try {
+            Files.write(input, data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new A_Huffman().compressFile(input, out, 10_000);
+            Files.write(packed, out.toByteArray());
+
+            B_Huffman instance = new B_Huffman();
+            boolean ok = Arrays.equals(instance.decodeBlocks(ByteBuffer.wrap(out.toByteArray())), data);
+            assertTrue("blocks failed", ok);
+            ByteArrayOutputStream restored = new ByteArrayOutputStream();
+            instance.decompressFile(packed, restored);
+            assertTrue("blocks file failed", Arrays.equals(restored.toByteArray(), data));
+        } finally {
+            Files.delete(input);
+            Files.delete(packed);
+        }
+    }
+
+    @Test
+    public void checkB_blocksCorrupted() throws Exception {
+        byte[] data = new byte[50_000];
+        Random random = new Random(10);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) random.nextInt(40);
+        }
+        Path input = Files.createTempFile("huffman", ".bin");
+        Path packed = Files.createTempFile("huffman", ".pack");
+        try {
+            Files.write(input, data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new A_Huffman().compressFile(input, out, 10_000);
+            byte[] valid = out.toByteArray();
+            int blocks = ByteBuffer.wrap(valid).getInt(valid.length - 4);
+            List<byte[]> forged = new ArrayList<>();
+            // число блоков, при котором 16 * blocks в int обнуляется, отрицательное и огромное
+            for (int count : new int[]{1 << 28, -1, Integer.MAX_VALUE, (1 << 28) + blocks}) {
+                byte[] bad = valid.clone();
+                ByteBuffer.wrap(bad).putInt(bad.length - 4, count);
+                forged.add(bad);
+            }
+            // размер первого блока в индексе выходит за поток
+            byte[] bad = valid.clone();
+            ByteBuffer.wrap(bad).putLong(bad.length - 4 - 16 * blocks + 8, Long.MAX_VALUE);
+            forged.add(bad);
+            // обрезанный хвост
+            forged.add(Arrays.copyOf(valid, 100));
+            forged.add(new byte[3]);
+            boolean ok = true;
+            for (byte[] stream : forged) {
+                boolean rejected = false;
+                try {
+                    new B_Huffman().decodeBlocks(ByteBuffer.wrap(stream));
+                } catch (IllegalArgumentException e) {
+                    rejected = true;
+                }
+                Files.write(packed, stream);
+                boolean fileRejected = false;
+                try {
+                    new B_Huffman().decompressFile(packed, new ByteArrayOutputStream());
+                } catch (IllegalArgumentException e) {
+                    fileRejected = true;
+                }
+                ok = ok && rejected && fileRejected;
+            }
+            assertTrue("blocks corrupted index failed", ok);
+        } finally {
+            Files.delete(input);
+            Files.delete(packed);
+        }
+    }
+
+    @Test
+    public void checkB_blocksDeepCode() throws Exception {
+        // частоты Фибоначчи F(1)..F(33): самые редкие символы получают коды длины 32
+        long[] freq = new long[33];
+        freq[0] = 1;
+        freq[1] = 1;
+        for (int c = 2; c < freq.length; c++) freq[c] = freq[c - 1] + freq[c - 2];
+        long total = 0;
+        for (long f : freq) total += f;
+        byte[] data = new byte[(int) total];
+        long[] left = freq.clone();
+        // символы вперемешку, чтобы длинные коды попадали в разные блоки
+        for (int i = 0, c = 0; i < data.length; c = (c + 1) % freq.length) {
+            if (left[c] > 0) {
+                left[c]--;
+                data[i++] = (byte) c;
+            }
+        }
+        Path input = Files.createTempFile("huffman", ".bin");
+        try {
+            Files.write(input, data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new A_Huffman().compressFile(input, out, 1 << 20);
+            byte[] compressed = out.toByteArray();
+            int maxLength = 0;
+            for (int c = 0; c < 256; c++) maxLength = Math.max(maxLength, compressed[c]);
+            boolean ok = maxLength == A_Huffman.CanonicalCode.MAX_LENGTH
+                    && Arrays.equals(new B_Huffman().decodeBlocks(ByteBuffer.wrap(compressed)), data);
+            assertTrue("blocks deep code failed", ok);
+            boolean rejected = false;
+            try {
+                new A_Huffman().compressFile(input, out, A_Huffman.MAX_BLOCK_SIZE + 1);
+            } catch (IllegalArgumentException e) {
+                rejected = true;
+            }
+            assertTrue("blocks size limit failed", rejected);
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    @Test
+    public void checkB_adaptive() throws Exception {
+        byte[] sample = "abacabad".getBytes("US-ASCII");
+        byte[] empty = new byte[0];
+        byte[] all = new byte[256 * 3];
+        for (int i = 0; i < all.length; i++) all[i] = (byte) (i * 7);
+        byte[] text = new byte[200_000];
+        Random random = new Random(13);
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) ('a' + Math.min(25, (int) Math.abs(random.nextGaussian() * 5)));
+        }
+        // проходы по всем символам туда и обратно: длинные блоки равного веса, лидер далеко от узла
+        byte[] zigzag = new byte[256 * 40];
+        for (int i = 0; i < zigzag.length; i++) zigzag[i] = (byte) ((i >> 8) % 2 == 0 ? i : 255 - i);
+        for (byte[] data : new byte[][]{sample, empty, all, text, zigzag}) {
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            new A_Huffman().encodeAdaptive(new ByteArrayInputStream(data), encoded);
+            ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+            new B_Huffman().decodeAdaptive(new ByteArrayInputStream(encoded.toByteArray()), decoded);
+            assertTrue("adaptive failed " + data.length, Arrays.equals(decoded.toByteArray(), data));
+            if (data == text) {
+                long staticBytes = (A_Huffman.CanonicalCode.of(data, 0, data.length).bitLength(data, 0, data.length) + 7) / 8;
+                assertTrue("adaptive too long", encoded.size() < staticBytes * 1.01 + 300);
+            }
+        }
+    }
+
     @Test
     public void checkC() throws Exception {
         InputStream inputStream = C_HeapMax.class.getResourceAsStream("dataC.txt");
@@ -44,4 +291,108 @@ public class Lesson03Test {
         assertTrue("C failed", ok);
     }
 
+    @Test
+    public void checkC_primitive() throws Exception {
+        C_HeapMax instance = new C_HeapMax();
+        String commands = "5\r\n  insert 7\nEXTRACTMAX\nfoo bar\nExtractMax\nInsert -3\nInsert 12";
+        long res = instance.findMaxValue(new ByteArrayInputStream(commands.getBytes("US-ASCII")), false);
+        assertTrue("C parser failed", res == 7);
+
+        // чужие слова не считаются командами, аргумент insert не берется со следующей строки
+        commands = "7\nignore 5\nexit\nInsert 3\nInsert\n9\nExtractMax\nInsert 4 5\nextractMax\nInsert 1\nExtractMax";
+        res = instance.findMaxValue(new ByteArrayInputStream(commands.getBytes("US-ASCII")), false);
+        assertTrue("C keywords failed", res == 3);
+
+        commands = "3\nInsert -9223372036854775808\nInsert 9223372036854775807\nExtractMax";
+        res = instance.findMaxValue(new ByteArrayInputStream(commands.getBytes("US-ASCII")), false);
+        assertTrue("C long range failed", res == Long.MAX_VALUE);
+        boolean overflow = false;
+        try {
+            instance.findMaxValue(new ByteArrayInputStream("1\nInsert 9223372036854775808".getBytes("US-ASCII")), false);
+        } catch (NumberFormatException e) {
+            overflow = true;
+        }
+        assertTrue("C overflow failed", overflow);
+
+        // байт 0xFF в чужой строке - не конец потока
+        byte[] binary = "3\n? junk\nInsert 5\nExtractMax".getBytes("US-ASCII");
+        binary[2] = (byte) 0xFF;
+        res = instance.findMaxValue(new ByteArrayInputStream(binary), false);
+        assertTrue("C non-ASCII failed", res == 5);
+
+        Random random = new Random(17);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) values[i] = random.nextLong();
+        C_HeapMax.MaxHeap heap = new C_HeapMax.MaxHeap(values);
+        PriorityQueue<Long> expected = new PriorityQueue<>(Collections.reverseOrder());
+        for (long v : values) expected.add(v);
+        for (int i = 0; i < 50_000; i++) {
+            if (random.nextInt(3) > 0 || expected.isEmpty()) {
+                long v = random.nextInt(1000) - 500;
+                heap.insert(v);
+                expected.add(v);
+            } else {
+                assertTrue("C heap failed", heap.extractMax() == expected.poll());
+            }
+        }
+        while (!expected.isEmpty()) {
+            assertTrue("C heap drain failed", heap.extractMax() == expected.poll());
+        }
+        assertTrue("C heap size failed", heap.isEmpty());
+    }
+
+    @Test
+    public void checkC_heapVariants() throws Exception {
+        for (String name : new String[]{"binary", "4-ary", "8-ary", "pairing"}) {
+            Random random = new Random(19);
+            C_HeapMax.LongHeap heap = C_HeapMax.newHeap(name);
+            PriorityQueue<Long> expected = new PriorityQueue<>(Collections.reverseOrder());
+            for (int i = 0; i < 100_000; i++) {
+                if (random.nextInt(5) < 3 || expected.isEmpty()) {
+                    long v = random.nextInt(10_000) - 5_000;
+                    heap.insert(v);
+                    expected.add(v);
+                } else {
+                    assertTrue(name + " failed", heap.extractMax() == expected.poll());
+                }
+                assertTrue(name + " size failed", heap.size() == expected.size());
+            }
+            while (!expected.isEmpty()) {
+                assertTrue(name + " drain failed", heap.peekMax() == expected.peek());
+                assertTrue(name + " drain failed", heap.extractMax() == expected.poll());
+            }
+        }
+
+        C_HeapMax.NodeArena arena = new C_HeapMax.NodeArena();
+        C_HeapMax.PairingMaxHeap a = new C_HeapMax.PairingMaxHeap(arena);
+        C_HeapMax.PairingMaxHeap b = new C_HeapMax.PairingMaxHeap(arena);
+        for (int i = 0; i < 100; i++) {
+            a.insert(2 * i);
+            b.insert(2 * i + 1);
+        }
+        for (int i = 0; i < 10; i++) b.extractMax();
+        a.meld(b);
+        boolean ok = b.isEmpty() && a.size() == 190 && a.peekMax() == 198;
+        // опустевшая после слияния куча снова пригодна и переиспользует узлы пула
+        for (int i = 0; i < 5; i++) b.insert(1000 + i);
+        a.meld(b);
+        ok &= b.isEmpty() && a.size() == 195 && a.extractMax() == 1004;
+        long previous = Long.MAX_VALUE;
+        int count = 0;
+        while (!a.isEmpty()) {
+            long v = a.extractMax();
+            ok &= v <= previous;
+            previous = v;
+            count++;
+        }
+        ok &= count == 194;
+        boolean rejected = false;
+        try {
+            a.meld(new C_HeapMax.PairingMaxHeap());
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        ok &= rejected;
+        assertTrue("pairing meld failed", ok);
+    }
 }
@@ -2,7 +2,9 @@ package by.it.group410971.kozich.lesson04;
 
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Scanner;
+import java.util.stream.IntStream;
 
 /*
 В первой строке источника данных даны:
@@ -33,6 +35,53 @@ public class A_BinaryFind {
         for (int index : result) {
             System.out.print(index + " ");
         }
+        System.out.println();
+
+        // пакетный поиск по Eytzinger-раскладке против обычного бинарного поиска
+        int n = 10_000_000;
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = 3 * i + 1;
+        }
+        int[] queries = new int[20_000_000];
+        long seed = 1;
+        for (int i = 0; i < queries.length; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            queries[i] = (int) ((seed >>> 33) % (3L * n));
+        }
+        long startTime = System.currentTimeMillis();
+        long checksum = 0;
+        for (int q : queries) {
+            checksum += instance.binarySearch(a, q);
+        }
+        long classic = System.currentTimeMillis() - startTime;
+        EytzingerIndex index = new EytzingerIndex(a);
+        startTime = System.currentTimeMillis();
+        int[] found = index.findAll(queries, false);
+        long batch = System.currentTimeMillis() - startTime;
+        startTime = System.currentTimeMillis();
+        index.findAll(queries, true);
+        long parallel = System.currentTimeMillis() - startTime;
+        for (int r : found) {
+            checksum -= r;
+        }
+        System.out.printf("binarySearch: %d мс, Eytzinger: %d мс, параллельно: %d мс, разница=%d\n",
+                classic, batch, parallel, checksum);
+
+        // отсортированный пакет запросов: галоп от предыдущего ответа и интерполяция
+        int[] sortedQueries = Arrays.copyOf(queries, queries.length);
+        Arrays.sort(sortedQueries);
+        startTime = System.currentTimeMillis();
+        int[] gallop = instance.findAll(a, sortedQueries);
+        long galloping = System.currentTimeMillis() - startTime;
+        startTime = System.currentTimeMillis();
+        checksum = 0;
+        for (int i = 0; i < sortedQueries.length; i++) {
+            checksum += instance.interpolationSearch(a, sortedQueries[i]) - gallop[i];
+        }
+        long interpolation = System.currentTimeMillis() - startTime;
+        System.out.printf("галоп по сортированным: %d мс, интерполяция: %d мс, разница=%d\n",
+                galloping, interpolation, checksum);
     }
 
     int[] findIndex(InputStream stream) throws FileNotFoundException {
@@ -56,7 +105,7 @@ public class A_BinaryFind {
     }
 
     // Бинарный поиск с возвратом индекса 1-based или -1, если не найден
-    private int binarySearch(int[] arr, int key) {
+    int binarySearch(int[] arr, int key) {
         int left = 0;
         int right = arr.length - 1;
         while (left <= right) {
@@ -71,4 +120,159 @@ public class A_BinaryFind {
         }
         return -1; // не найден
     }
+
+    // Пакетный поиск: если запросы не убывают, идем по массиву слева направо галопом,
+    // иначе - независимые бинарные поиски
+    int[] findAll(int[] arr, int[] queries) {
+        for (int i = 1; i < queries.length; i++) {
+            if (queries[i - 1] > queries[i]) {
+                int[] result = new int[queries.length];
+                for (int j = 0; j < queries.length; j++) {
+                    result[j] = binarySearch(arr, queries[j]);
+                }
+                return result;
+            }
+        }
+        return findSorted(arr, queries);
+    }
+
+    // Запросы отсортированы по неубыванию: каждый следующий ответ не левее предыдущего.
+    // От прошлой позиции шагаем 1, 2, 4, ... пока не перескочим ключ, затем бинарный поиск
+    // в последнем шаге - O(log d) на запрос, где d - расстояние до предыдущего ответа
+    int[] findSorted(int[] arr, int[] queries) {
+        int[] result = new int[queries.length];
+        int from = 0;   // первый индекс, где arr[i] >= предыдущего запроса
+        for (int q = 0; q < queries.length; q++) {
+            int key = queries[q];
+            if (q > 0 && key < queries[q - 1]) {
+                throw new IllegalArgumentException("queries must be sorted, broken at " + q);
+            }
+            int left = from;
+            int right = from;
+            int step = 1;
+            while (right < arr.length && arr[right] < key) {
+                left = right + 1;
+                right = (int) Math.min(arr.length, (long) right + step);
+                step <<= 1;
+            }
+            // arr[left - 1] < key, а arr[right] >= key (или right = arr.length)
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (arr[mid] < key) {
+                    left = mid + 1;
+                } else {
+                    right = mid;
+                }
+            }
+            from = left;
+            result[q] = left < arr.length && arr[left] == key ? left + 1 : -1;
+        }
+        return result;
+    }
+
+    // Интерполяционный поиск: точка пробы берется пропорционально положению ключа
+    // между arr[left] и arr[right]. Для равномерно распределенных ключей O(log log n),
+    // для неравномерных может деградировать до линейного
+    int interpolationSearch(int[] arr, int key) {
+        int left = 0;
+        int right = arr.length - 1;
+        while (left <= right && arr[left] <= key && key <= arr[right]) {
+            long span = (long) arr[right] - arr[left];
+            int mid = span == 0 ? left
+                    : left + (int) ((long) (right - left) * ((long) key - arr[left]) / span);
+            if (arr[mid] == key) {
+                return mid + 1;
+            } else if (arr[mid] < key) {
+                left = mid + 1;
+            } else {
+                right = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    // Подготовленный индекс: отсортированный массив переложен в порядке обхода в ширину
+    // (Eytzinger, дети узла k - 2k и 2k+1), так верхние уровни дерева лежат рядом в кэше.
+    // Внутренний цикл без ветвлений: шаг всегда k = 2k + (a[k] < key), число шагов одинаково
+    // для всех ключей. Пакет запросов идет группами по LANES ключей в ногу: промахи кэша
+    // у соседних ключей независимы и перекрываются (замена программной предвыборки в Java).
+    static final class EytzingerIndex {
+        private static final int LANES = 8;
+        private static final int PARALLEL_CHUNK = 1 << 14;
+
+        private final int n;
+        private final int[] tree;       // tree[1..n], tree[0] не используется
+        private final int[] position;   // 1-based индекс элемента tree[k] в исходном массиве
+        private final int steps;        // глубина дерева
+
+        EytzingerIndex(int[] sorted) {
+            n = sorted.length;
+            tree = new int[n + 1];
+            position = new int[n + 1];
+            fill(sorted, 0, 1);
+            steps = 32 - Integer.numberOfLeadingZeros(n);
+        }
+
+        // Обход в симметричном порядке раскладывает элементы по возрастанию
+        private int fill(int[] sorted, int i, int k) {
+            if (k <= n) {
+                i = fill(sorted, i, 2 * k);
+                tree[k] = sorted[i];
+                position[k] = i + 1;
+                i = fill(sorted, i + 1, 2 * k + 1);
+            }
+            return i;
+        }
+
+        // 1-based индекс key в исходном массиве или -1
+        int find(int key) {
+            int k = 1;
+            for (int s = 1; s < steps; s++) {
+                k = 2 * k + (tree[k] < key ? 1 : 0);
+            }
+            return answer(lastStep(k, key), key);
+        }
+
+        // Все уровни, кроме последнего, заполнены целиком; последний - только до n
+        private int lastStep(int k, int key) {
+            return k <= n ? 2 * k + (tree[k] < key ? 1 : 0) : k;
+        }
+
+        // k после спуска кодирует путь; последний поворот влево - узел первого элемента >= key
+        private int answer(int k, int key) {
+            k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+            return k != 0 && tree[k] == key ? position[k] : -1;
+        }
+
+        int[] findAll(int[] queries, boolean parallel) {
+            int[] result = new int[queries.length];
+            int chunks = (queries.length + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+            IntStream range = IntStream.range(0, chunks);
+            if (parallel) range = range.parallel();
+            range.forEach(c -> findRange(queries, result, c * PARALLEL_CHUNK,
+                    Math.min(queries.length, (c + 1) * PARALLEL_CHUNK)));
+            return result;
+        }
+
+        private void findRange(int[] queries, int[] result, int from, int to) {
+            int[] k = new int[LANES];
+            int i = from;
+            for (; i + LANES <= to; i += LANES) {
+                Arrays.fill(k, 1);
+                for (int s = 1; s < steps; s++) {
+                    for (int lane = 0; lane < LANES; lane++) {
+                        int node = k[lane];
+                        k[lane] = 2 * node + (tree[node] < queries[i + lane] ? 1 : 0);
+                    }
+                }
+                for (int lane = 0; lane < LANES; lane++) {
+                    int key = queries[i + lane];
+                    result[i + lane] = answer(lastStep(k[lane], key), key);
+                }
+            }
+            for (; i < to; i++) {
+                result[i] = find(queries[i]);
+            }
+        }
+    }
 }
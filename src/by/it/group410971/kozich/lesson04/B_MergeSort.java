@@ -1,8 +1,24 @@
 package by.it.group410971.kozich.lesson04;
 
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /*
 Реализуйте сортировку слиянием для одномерного массива.
@@ -20,13 +36,76 @@ Sample Output:
 */
 public class B_MergeSort {
 
-    public static void main(String[] args) throws FileNotFoundException {
+    // серии короче этого добиваются сортировкой вставками
+    private static final int MIN_RUN = 32;
+    // слияния меньше этого размера не делятся между потоками
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    public static void main(String[] args) throws IOException {
         InputStream stream = B_MergeSort.class.getResourceAsStream("dataB.txt");
         B_MergeSort instance = new B_MergeSort();
         int[] result = instance.getMergeSort(stream);
         for (int index : result) {
             System.out.print(index + " ");
         }
+        System.out.println();
+
+        // сравнение с Arrays.sort / Arrays.parallelSort на случайных и почти упорядоченных данных
+        int n = 10_000_000;
+        Random random = new Random(17);
+        int[] ints = new int[n];
+        long[] longs = new long[n];
+        for (int i = 0; i < n; i++) {
+            ints[i] = random.nextInt();
+            longs[i] = random.nextLong();
+        }
+        int[] nearlySorted = new int[n];
+        for (int i = 0; i < n; i++) {
+            nearlySorted[i] = i % 100_000 == 0 ? random.nextInt() : i;
+        }
+        int[] scratch = new int[n];
+        long[] longScratch = new long[n];
+        for (int round = 0; round < 3; round++) {
+            System.out.printf("int[] random:  Arrays.sort=%d мс, parallelSort=%d мс, sort=%d мс, parallel=%d мс\n",
+                    time(() -> Arrays.sort(ints.clone())),
+                    time(() -> Arrays.parallelSort(ints.clone())),
+                    time(() -> sort(ints.clone(), scratch, false)),
+                    time(() -> sort(ints.clone(), scratch, true)));
+            System.out.printf("int[] nearly:  Arrays.sort=%d мс, parallelSort=%d мс, sort=%d мс, parallel=%d мс\n",
+                    time(() -> Arrays.sort(nearlySorted.clone())),
+                    time(() -> Arrays.parallelSort(nearlySorted.clone())),
+                    time(() -> sort(nearlySorted.clone(), scratch, false)),
+                    time(() -> sort(nearlySorted.clone(), scratch, true)));
+            System.out.printf("long[] random: Arrays.sort=%d мс, parallelSort=%d мс, sort=%d мс, parallel=%d мс\n",
+                    time(() -> Arrays.sort(longs.clone())),
+                    time(() -> Arrays.parallelSort(longs.clone())),
+                    time(() -> sort(longs.clone(), longScratch, false)),
+                    time(() -> sort(longs.clone(), longScratch, true)));
+        }
+
+        // внешняя сортировка 50 млн int (200 МБ) сериями по 4 млн, слияние по 8
+        Path input = Files.createTempFile("unsorted", ".bin");
+        Path output = Files.createTempFile("sorted", ".bin");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(input), 1 << 16))) {
+                for (int i = 0; i < 50_000_000; i++) {
+                    out.writeInt(random.nextInt());
+                }
+            }
+            long startTime = System.currentTimeMillis();
+            new ExternalSort(4_000_000, 8, null).sortInts(input, output);
+            System.out.printf("ExternalSort 50M int: %d мс\n", System.currentTimeMillis() - startTime);
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    // время работы вместе с clone() входного массива, одинаковое для всех вариантов
+    private static long time(Runnable task) {
+        long startTime = System.currentTimeMillis();
+        task.run();
+        return System.currentTimeMillis() - startTime;
     }
 
     int[] getMergeSort(InputStream stream) throws FileNotFoundException {
@@ -38,42 +117,601 @@ public class B_MergeSort {
             a[i] = scanner.nextInt();
         }
 
-        mergeSort(a, 0, n - 1);
+        sort(a);
 
         return a;
     }
 
-    private void mergeSort(int[] array, int left, int right) {
-        if (left >= right) return;
+    static void sort(int[] a) {
+        sort(a, new int[a.length], false);
+    }
 
-        int mid = left + (right - left) / 2;
-        mergeSort(array, left, mid);
-        mergeSort(array, mid + 1, right);
-        merge(array, left, mid, right);
+    static void parallelSort(int[] a) {
+        sort(a, new int[a.length], true);
     }
 
-    private void merge(int[] array, int left, int mid, int right) {
-        int[] temp = new int[right - left + 1];
-        int i = left;
-        int j = mid + 1;
-        int k = 0;
+    // Естественная сортировка слиянием: массив режется на готовые возрастающие (убывающие
+    // разворачиваются) серии, короткие добиваются вставками до MIN_RUN, затем серии сливаются
+    // попарно проходами, перекладываясь между a и scratch. Кроме границ серий памяти не выделяет,
+    // scratch (не короче a) можно переиспользовать между вызовами
+    static void sort(int[] a, int[] scratch, boolean parallel) {
+        if (scratch.length < a.length) {
+            throw new IllegalArgumentException("scratch is shorter than array: " + scratch.length + " < " + a.length);
+        }
+        int[] bounds = findRuns(a);
+        int runs = bounds.length - 1;
+        int[] src = a;
+        int[] dst = scratch;
+        while (runs > 1) {
+            if (parallel && a.length >= PARALLEL_THRESHOLD) {
+                ForkJoinPool.commonPool().invoke(new IntPassTask(src, dst, bounds, runs, 0, (runs + 1) / 2));
+            } else {
+                for (int pair = 0; 2 * pair < runs; pair++) {
+                    mergePair(src, dst, bounds, runs, pair);
+                }
+            }
+            runs = compactBounds(bounds, runs);
+            int[] t = src;
+            src = dst;
+            dst = t;
+        }
+        if (src != a) {
+            System.arraycopy(src, 0, a, 0, a.length);
+        }
+    }
 
-        while (i <= mid && j <= right) {
-            if (array[i] <= array[j]) {
-                temp[k++] = array[i++];
+    // Начала серий и n в конце; все серии, кроме последней, не короче MIN_RUN
+    private static int[] findRuns(int[] a) {
+        int n = a.length;
+        int[] bounds = new int[n / MIN_RUN + 2];
+        int count = 0;
+        for (int start = 0; start < n; ) {
+            int end = start + 1;
+            if (end < n && a[end] < a[start]) {
+                while (end < n && a[end] < a[end - 1]) end++;
+                reverse(a, start, end);
             } else {
-                temp[k++] = array[j++];
+                while (end < n && a[end] >= a[end - 1]) end++;
             }
+            if (end - start < MIN_RUN) {
+                int forced = Math.min(n, start + MIN_RUN);
+                insertionSort(a, start, end, forced);
+                end = forced;
+            }
+            bounds[count++] = start;
+            start = end;
         }
+        bounds[count] = n;
+        return Arrays.copyOf(bounds, count + 1);
+    }
 
-        while (i <= mid) {
-            temp[k++] = array[i++];
+    private static void reverse(int[] a, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
         }
+    }
 
-        while (j <= right) {
-            temp[k++] = array[j++];
+    // a[from, sorted) уже упорядочен, вставляем в него a[sorted, to)
+    private static void insertionSort(int[] a, int from, int sorted, int to) {
+        for (int i = sorted; i < to; i++) {
+            int x = a[i];
+            int j = i - 1;
+            while (j >= from && a[j] > x) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = x;
         }
+    }
 
-        System.arraycopy(temp, 0, array, left, temp.length);
+    private static void mergePair(int[] src, int[] dst, int[] bounds, int runs, int pair) {
+        int lo = bounds[2 * pair];
+        int mid = bounds[Math.min(2 * pair + 1, runs)];
+        int hi = bounds[Math.min(2 * pair + 2, runs)];
+        merge(src, lo, mid, mid, hi, dst, lo);
+    }
+
+    private static void merge(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int pos) {
+        if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2]) {
+            while (lo1 < hi1 && lo2 < hi2) {
+                dst[pos++] = src[lo1] <= src[lo2] ? src[lo1++] : src[lo2++];
+            }
+        }
+        System.arraycopy(src, lo1, dst, pos, hi1 - lo1);
+        System.arraycopy(src, lo2, dst, pos + hi1 - lo1, hi2 - lo2);
+    }
+
+    // Первый индекс в [from, to), где a[i] >= key
+    private static int lowerBound(int[] a, int from, int to, int key) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (a[mid] < key) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    // Проход слияния: пары серий [pairFrom, pairTo) делятся пополам между потоками
+    private static final class IntPassTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src, dst, bounds;
+        private final int runs, pairFrom, pairTo;
+
+        IntPassTask(int[] src, int[] dst, int[] bounds, int runs, int pairFrom, int pairTo) {
+            this.src = src;
+            this.dst = dst;
+            this.bounds = bounds;
+            this.runs = runs;
+            this.pairFrom = pairFrom;
+            this.pairTo = pairTo;
+        }
+
+        @Override
+        protected void compute() {
+            if (pairTo - pairFrom > 1) {
+                int mid = (pairFrom + pairTo) >>> 1;
+                invokeAll(new IntPassTask(src, dst, bounds, runs, pairFrom, mid),
+                        new IntPassTask(src, dst, bounds, runs, mid, pairTo));
+                return;
+            }
+            int lo = bounds[2 * pairFrom];
+            int mid = bounds[Math.min(2 * pairFrom + 1, runs)];
+            int hi = bounds[Math.min(2 * pairFrom + 2, runs)];
+            new IntMergeTask(src, lo, mid, mid, hi, dst, lo).compute();
+        }
+    }
+
+    // Параллельное слияние двух серий: середина большей серии находится бинарным поиском
+    // в меньшей, и обе половины сливаются независимо - последние проходы тоже идут в потоках
+    private static final class IntMergeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src, dst;
+        private final int lo1, hi1, lo2, hi2, pos;
+
+        IntMergeTask(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int pos) {
+            this.src = src;
+            this.dst = dst;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.pos = pos;
+        }
+
+        @Override
+        protected void compute() {
+            if ((hi1 - lo1) + (hi2 - lo2) <= PARALLEL_THRESHOLD) {
+                merge(src, lo1, hi1, lo2, hi2, dst, pos);
+                return;
+            }
+            // одинаковые примитивы неразличимы, так что серии можно менять местами
+            if (hi1 - lo1 < hi2 - lo2) {
+                new IntMergeTask(src, lo2, hi2, lo1, hi1, dst, pos).compute();
+                return;
+            }
+            int m1 = (lo1 + hi1) >>> 1;
+            int m2 = lowerBound(src, lo2, hi2, src[m1]);
+            int split = pos + (m1 - lo1) + (m2 - lo2);
+            dst[split] = src[m1];
+            invokeAll(new IntMergeTask(src, lo1, m1, lo2, m2, dst, pos),
+                    new IntMergeTask(src, m1 + 1, hi1, m2, hi2, dst, split + 1));
+        }
+    }
+
+    // То же для long[]
+    static void sort(long[] a) {
+        sort(a, new long[a.length], false);
+    }
+
+    static void parallelSort(long[] a) {
+        sort(a, new long[a.length], true);
+    }
+
+    static void sort(long[] a, long[] scratch, boolean parallel) {
+        if (scratch.length < a.length) {
+            throw new IllegalArgumentException("scratch is shorter than array: " + scratch.length + " < " + a.length);
+        }
+        int[] bounds = findRuns(a);
+        int runs = bounds.length - 1;
+        long[] src = a;
+        long[] dst = scratch;
+        while (runs > 1) {
+            if (parallel && a.length >= PARALLEL_THRESHOLD) {
+                ForkJoinPool.commonPool().invoke(new LongPassTask(src, dst, bounds, runs, 0, (runs + 1) / 2));
+            } else {
+                for (int pair = 0; 2 * pair < runs; pair++) {
+                    mergePair(src, dst, bounds, runs, pair);
+                }
+            }
+            runs = compactBounds(bounds, runs);
+            long[] t = src;
+            src = dst;
+            dst = t;
+        }
+        if (src != a) {
+            System.arraycopy(src, 0, a, 0, a.length);
+        }
+    }
+
+    private static int[] findRuns(long[] a) {
+        int n = a.length;
+        int[] bounds = new int[n / MIN_RUN + 2];
+        int count = 0;
+        for (int start = 0; start < n; ) {
+            int end = start + 1;
+            if (end < n && a[end] < a[start]) {
+                while (end < n && a[end] < a[end - 1]) end++;
+                reverse(a, start, end);
+            } else {
+                while (end < n && a[end] >= a[end - 1]) end++;
+            }
+            if (end - start < MIN_RUN) {
+                int forced = Math.min(n, start + MIN_RUN);
+                insertionSort(a, start, end, forced);
+                end = forced;
+            }
+            bounds[count++] = start;
+            start = end;
+        }
+        bounds[count] = n;
+        return Arrays.copyOf(bounds, count + 1);
+    }
+
+    private static void reverse(long[] a, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            long t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+    }
+
+    private static void insertionSort(long[] a, int from, int sorted, int to) {
+        for (int i = sorted; i < to; i++) {
+            long x = a[i];
+            int j = i - 1;
+            while (j >= from && a[j] > x) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = x;
+        }
+    }
+
+    private static void mergePair(long[] src, long[] dst, int[] bounds, int runs, int pair) {
+        int lo = bounds[2 * pair];
+        int mid = bounds[Math.min(2 * pair + 1, runs)];
+        int hi = bounds[Math.min(2 * pair + 2, runs)];
+        merge(src, lo, mid, mid, hi, dst, lo);
+    }
+
+    private static void merge(long[] src, int lo1, int hi1, int lo2, int hi2, long[] dst, int pos) {
+        if (lo1 < hi1 && lo2 < hi2 && src[hi1 - 1] > src[lo2]) {
+            while (lo1 < hi1 && lo2 < hi2) {
+                dst[pos++] = src[lo1] <= src[lo2] ? src[lo1++] : src[lo2++];
+            }
+        }
+        System.arraycopy(src, lo1, dst, pos, hi1 - lo1);
+        System.arraycopy(src, lo2, dst, pos + hi1 - lo1, hi2 - lo2);
+    }
+
+    private static int lowerBound(long[] a, int from, int to, long key) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (a[mid] < key) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return from;
+    }
+
+    private static final class LongPassTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] src, dst;
+        private final int[] bounds;
+        private final int runs, pairFrom, pairTo;
+
+        LongPassTask(long[] src, long[] dst, int[] bounds, int runs, int pairFrom, int pairTo) {
+            this.src = src;
+            this.dst = dst;
+            this.bounds = bounds;
+            this.runs = runs;
+            this.pairFrom = pairFrom;
+            this.pairTo = pairTo;
+        }
+
+        @Override
+        protected void compute() {
+            if (pairTo - pairFrom > 1) {
+                int mid = (pairFrom + pairTo) >>> 1;
+                invokeAll(new LongPassTask(src, dst, bounds, runs, pairFrom, mid),
+                        new LongPassTask(src, dst, bounds, runs, mid, pairTo));
+                return;
+            }
+            int lo = bounds[2 * pairFrom];
+            int mid = bounds[Math.min(2 * pairFrom + 1, runs)];
+            int hi = bounds[Math.min(2 * pairFrom + 2, runs)];
+            new LongMergeTask(src, lo, mid, mid, hi, dst, lo).compute();
+        }
+    }
+
+    private static final class LongMergeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] src, dst;
+        private final int lo1, hi1, lo2, hi2, pos;
+
+        LongMergeTask(long[] src, int lo1, int hi1, int lo2, int hi2, long[] dst, int pos) {
+            this.src = src;
+            this.dst = dst;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.pos = pos;
+        }
+
+        @Override
+        protected void compute() {
+            if ((hi1 - lo1) + (hi2 - lo2) <= PARALLEL_THRESHOLD) {
+                merge(src, lo1, hi1, lo2, hi2, dst, pos);
+                return;
+            }
+            if (hi1 - lo1 < hi2 - lo2) {
+                new LongMergeTask(src, lo2, hi2, lo1, hi1, dst, pos).compute();
+                return;
+            }
+            int m1 = (lo1 + hi1) >>> 1;
+            int m2 = lowerBound(src, lo2, hi2, src[m1]);
+            int split = pos + (m1 - lo1) + (m2 - lo2);
+            dst[split] = src[m1];
+            invokeAll(new LongMergeTask(src, lo1, m1, lo2, m2, dst, pos),
+                    new LongMergeTask(src, m1 + 1, hi1, m2, hi2, dst, split + 1));
+        }
+    }
+
+    // Сдвигает границы после прохода: от каждой пары серий остается одна
+    private static int compactBounds(int[] bounds, int runs) {
+        int merged = (runs + 1) / 2;
+        for (int i = 0; i <= merged; i++) {
+            bounds[i] = bounds[Math.min(2 * i, runs)];
+        }
+        return merged;
+    }
+
+    // Внешняя сортировка файлов из двоичных записей int или long (big-endian, как DataOutputStream).
+    // Вход читается отображенными в память кусками по runSize записей, каждый кусок сортируется
+    // в памяти sort(...) и сбрасывается во временный файл-серию. Затем серии сливаются
+    // группами по fanIn через дерево проигравших, пока не останется одна - выходной файл.
+    // Серии создаются в tempDir (null - системный временный каталог) и удаляются в конце
+    static final class ExternalSort {
+        private static final int IO_BUFFER = 1 << 16;
+
+        private final int runSize;
+        private final int fanIn;
+        private final Path tempDir;
+
+        ExternalSort(int runSize, int fanIn, Path tempDir) {
+            if (runSize < 1 || runSize > Integer.MAX_VALUE / Long.BYTES) {
+                throw new IllegalArgumentException("runSize out of range: " + runSize);
+            }
+            if (fanIn < 2) throw new IllegalArgumentException("fanIn must be at least 2: " + fanIn);
+            this.runSize = runSize;
+            this.fanIn = fanIn;
+            this.tempDir = tempDir;
+        }
+
+        void sortInts(Path input, Path output) throws IOException {
+            sort(input, output, Integer.BYTES);
+        }
+
+        void sortLongs(Path input, Path output) throws IOException {
+            sort(input, output, Long.BYTES);
+        }
+
+        private void sort(Path input, Path output, int width) throws IOException {
+            List<Path> created = new ArrayList<>();
+            try {
+                List<Path> runs = writeRuns(input, width, created);
+                while (runs.size() > fanIn) {
+                    List<Path> next = new ArrayList<>();
+                    for (int i = 0; i < runs.size(); i += fanIn) {
+                        List<Path> group = runs.subList(i, Math.min(runs.size(), i + fanIn));
+                        if (group.size() == 1) {
+                            next.add(group.get(0));
+                            continue;
+                        }
+                        Path merged = createRun(created);
+                        merge(group, merged, width);
+                        for (Path run : group) {
+                            Files.delete(run);
+                        }
+                        next.add(merged);
+                    }
+                    runs = next;
+                }
+                merge(runs, output, width);
+            } finally {
+                for (Path run : created) {
+                    Files.deleteIfExists(run);
+                }
+            }
+        }
+
+        private List<Path> writeRuns(Path input, int width, List<Path> created) throws IOException {
+            List<Path> runs = new ArrayList<>();
+            try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+                long size = in.size();
+                if (size % width != 0) {
+                    throw new IllegalArgumentException("file size " + size + " is not a multiple of " + width);
+                }
+                long total = size / width;
+                int capacity = (int) Math.min(runSize, total);
+                // один буфер серии и один scratch на все серии; новый массив только для последней, короткой
+                int[] ints = width == Integer.BYTES ? new int[capacity] : null;
+                int[] intScratch = width == Integer.BYTES ? new int[capacity] : null;
+                long[] longs = width == Long.BYTES ? new long[capacity] : null;
+                long[] longScratch = width == Long.BYTES ? new long[capacity] : null;
+                for (long first = 0; first < total; first += runSize) {
+                    int count = (int) Math.min(runSize, total - first);
+                    MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, first * width, (long) count * width);
+                    Path run = createRun(created);
+                    runs.add(run);
+                    try (RecordWriter out = new RecordWriter(run, width)) {
+                        if (width == Integer.BYTES) {
+                            int[] a = count == capacity ? ints : new int[count];
+                            map.asIntBuffer().get(a);
+                            B_MergeSort.sort(a, intScratch, false);
+                            for (int x : a) out.write(x);
+                        } else {
+                            long[] a = count == capacity ? longs : new long[count];
+                            map.asLongBuffer().get(a);
+                            B_MergeSort.sort(a, longScratch, false);
+                            for (long x : a) out.write(x);
+                        }
+                    }
+                }
+            }
+            return runs;
+        }
+
+        private Path createRun(List<Path> created) throws IOException {
+            Path run = tempDir == null ? Files.createTempFile("run", ".bin") : Files.createTempFile(tempDir, "run", ".bin");
+            created.add(run);
+            return run;
+        }
+
+        // k-путевое слияние деревом проигравших: tree[0] - победитель, во внутренних узлах
+        // 1..k-1 - проигравшие матчей, листья k..2k-1 - серии. После выдачи победителя
+        // переигрывается только путь от его листа к корню - log k сравнений на запись
+        private static void merge(List<Path> runs, Path target, int width) throws IOException {
+            int k = runs.size();
+            RecordReader[] readers = new RecordReader[k];
+            try (RecordWriter out = new RecordWriter(target, width)) {
+                for (int i = 0; i < k; i++) {
+                    readers[i] = new RecordReader(runs.get(i), width);
+                }
+                if (k == 0) return;
+                int[] tree = new int[k];
+                tree[0] = build(tree, readers, 1);
+                while (!readers[tree[0]].exhausted) {
+                    int winner = tree[0];
+                    out.write(readers[winner].current);
+                    readers[winner].advance();
+                    for (int node = (winner + k) >> 1; node >= 1; node >>= 1) {
+                        if (beats(readers, tree[node], winner)) {
+                            int t = tree[node];
+                            tree[node] = winner;
+                            winner = t;
+                        }
+                    }
+                    tree[0] = winner;
+                }
+            } finally {
+                for (RecordReader reader : readers) {
+                    if (reader != null) reader.close();
+                }
+            }
+        }
+
+        private static int build(int[] tree, RecordReader[] readers, int node) {
+            int k = readers.length;
+            if (node >= k) return node - k;
+            int left = build(tree, readers, 2 * node);
+            int right = build(tree, readers, 2 * node + 1);
+            if (beats(readers, left, right)) {
+                tree[node] = right;
+                return left;
+            }
+            tree[node] = left;
+            return right;
+        }
+
+        // исчерпанная серия проигрывает всем
+        private static boolean beats(RecordReader[] readers, int a, int b) {
+            return !readers[a].exhausted && (readers[b].exhausted || readers[a].current <= readers[b].current);
+        }
+
+        // Последовательное чтение серии через буфер; int расширяется до long, порядок сохраняется
+        private static final class RecordReader implements Closeable {
+            private final FileChannel channel;
+            private final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER);
+            private final int width;
+            long current;
+            boolean exhausted;
+
+            RecordReader(Path path, int width) throws IOException {
+                this.channel = FileChannel.open(path, StandardOpenOption.READ);
+                this.width = width;
+                buffer.flip();
+                advance();
+            }
+
+            void advance() throws IOException {
+                if (buffer.remaining() < width) {
+                    buffer.compact();
+                    while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    }
+                    buffer.flip();
+                    if (buffer.remaining() < width) {
+                        exhausted = true;
+                        return;
+                    }
+                }
+                current = width == Integer.BYTES ? buffer.getInt() : buffer.getLong();
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        }
+
+        private static final class RecordWriter implements Closeable {
+            private final FileChannel channel;
+            private final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER);
+            private final int width;
+
+            RecordWriter(Path path, int width) throws IOException {
+                this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                this.width = width;
+            }
+
+            void write(long value) throws IOException {
+                if (buffer.remaining() < width) flush();
+                if (width == Integer.BYTES) {
+                    buffer.putInt((int) value);
+                } else {
+                    buffer.putLong(value);
+                }
+            }
+
+            private void flush() throws IOException {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                buffer.clear();
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    flush();
+                } finally {
+                    channel.close();
+                }
+            }
+        }
     }
 }
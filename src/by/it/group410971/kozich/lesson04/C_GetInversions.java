@@ -2,7 +2,11 @@ package by.it.group410971.kozich.lesson04;
 
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /*
 Рассчитать число инверсий одномерного массива.
@@ -21,11 +25,61 @@ Sample Output:
 
 public class C_GetInversions {
 
+    // блоки короче этого сортируются вставками, сдвиги вставки и есть инверсии внутри блока
+    private static final int INSERTION_BLOCK = 32;
+    // диапазоны меньше этого не делятся между потоками
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    // Fenwick берется, когда значения помещаются в диапазон не больше n (и не больше этого)
+    private static final int FENWICK_MAX_RANGE = 1 << 24;
+
     public static void main(String[] args) throws FileNotFoundException {
         InputStream stream = C_GetInversions.class.getResourceAsStream("dataC.txt");
         C_GetInversions instance = new C_GetInversions();
         int result = instance.calc(stream);
-        System.out.print(result);
+        System.out.println(result);
+
+        // 10^8 элементов: int[] данных, рабочая копия и scratch - около 1.2 ГБ кучи
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000_000;
+        int[] a = new int[n];
+        Random random = new Random(19);
+        for (int i = 0; i < n; i++) {
+            a[i] = random.nextInt();
+        }
+        int[] work = new int[n];
+        int[] scratch = new int[n];
+        for (boolean parallel : new boolean[]{false, true}) {
+            System.arraycopy(a, 0, work, 0, n);
+            long startTime = System.currentTimeMillis();
+            long count = countInversions(work, scratch, parallel);
+            System.out.printf("слиянием%s: %d инверсий, %d мс\n", parallel ? " параллельно" : "",
+                    count, System.currentTimeMillis() - startTime);
+        }
+        for (int i = 0; i < n; i++) {
+            a[i] = random.nextInt(1000);
+        }
+        System.arraycopy(a, 0, work, 0, n);
+        long startTime = System.currentTimeMillis();
+        long count = countInversions(work, scratch, false);
+        System.out.printf("значения < 1000, слиянием: %d инверсий, %d мс\n", count, System.currentTimeMillis() - startTime);
+        startTime = System.currentTimeMillis();
+        count = countInversionsFenwick(a);
+        System.out.printf("значения < 1000, Fenwick: %d инверсий, %d мс\n", count, System.currentTimeMillis() - startTime);
+
+        // скользящее окно 10^5 из потока 10^6 значений, каждое сотое событие - замена в окне
+        int[] universe = new int[100_000];
+        for (int i = 0; i < universe.length; i++) {
+            universe[i] = i;
+        }
+        SlidingInversions window = new SlidingInversions(universe, 100_000);
+        startTime = System.currentTimeMillis();
+        for (int i = 0; i < 1_000_000; i++) {
+            if (i % 100 == 99) {
+                window.set(random.nextInt(window.size()), random.nextInt(universe.length));
+            } else {
+                window.append(random.nextInt(universe.length));
+            }
+        }
+        System.out.printf("окно: %d инверсий, %d мс\n", window.inversions(), System.currentTimeMillis() - startTime);
     }
 
     int calc(InputStream stream) throws FileNotFoundException {
@@ -37,49 +91,467 @@ public class C_GetInversions {
             a[i] = scanner.nextInt();
         }
 
-        return mergeSortAndCount(a, 0, n - 1);
+        // для n > 65536 число инверсий может не поместиться в int - тогда исключение, а не мусор
+        return Math.toIntExact(countInversions(a));
+    }
+
+    // Число инверсий без изменения a: при малом диапазоне значений - деревом Фенвика,
+    // иначе слиянием на копии
+    static long countInversions(int[] a) {
+        if (a.length < 2) return 0;
+        int min = a[0];
+        int max = a[0];
+        for (int x : a) {
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+        }
+        long range = (long) max - min + 1;
+        if (range <= a.length && range <= FENWICK_MAX_RANGE) {
+            return countInversionsFenwick(a);
+        }
+        return countInversions(a.clone(), new int[a.length], false);
+    }
+
+    // Сортирует a слиянием, возвращая число инверсий. Снизу вверх: блоки по INSERTION_BLOCK
+    // вставками, затем проходы слияния перекладывают данные между a и scratch (не короче a) -
+    // за весь подсчет ничего не выделяется
+    static long countInversions(int[] a, int[] scratch, boolean parallel) {
+        if (scratch.length < a.length) {
+            throw new IllegalArgumentException("scratch is shorter than array: " + scratch.length + " < " + a.length);
+        }
+        if (parallel && a.length > PARALLEL_THRESHOLD) {
+            return ForkJoinPool.commonPool().invoke(new CountTask(a, scratch, 0, a.length));
+        }
+        return countRange(a, scratch, 0, a.length);
+    }
+
+    // Считает инверсии в a[from, to) и сортирует этот диапазон на месте
+    private static long countRange(int[] a, int[] scratch, int from, int to) {
+        long count = 0;
+        for (int block = from; block < to; block += INSERTION_BLOCK) {
+            count += insertionSort(a, block, Math.min(to, block + INSERTION_BLOCK));
+        }
+        int[] src = a;
+        int[] dst = scratch;
+        for (int width = INSERTION_BLOCK; width < to - from; width <<= 1) {
+            for (int lo = from, hi; lo < to; lo = hi) {
+                int mid = lo + Math.min(width, to - lo);
+                hi = mid + Math.min(width, to - mid);
+                count += mergeCount(src, lo, mid, mid, hi, dst, lo);
+            }
+            int[] t = src;
+            src = dst;
+            dst = t;
+        }
+        if (src != a) {
+            System.arraycopy(src, from, a, from, to - from);
+        }
+        return count;
+    }
+
+    private static long insertionSort(int[] a, int from, int to) {
+        long shifts = 0;
+        for (int i = from + 1; i < to; i++) {
+            int x = a[i];
+            int j = i - 1;
+            while (j >= from && a[j] > x) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            shifts += i - 1 - j;
+            a[j + 1] = x;
+        }
+        return shifts;
     }
 
-    // Функция сортировки слиянием и подсчётом инверсий
-    private int mergeSortAndCount(int[] arr, int left, int right) {
-        int count = 0;
-        if (left < right) {
-            int mid = left + (right - left) / 2;
+    // Слияние левой src[lo1, hi1) и правой src[lo2, hi2) серий в dst с pos;
+    // правый элемент, обогнавший левые, образует инверсию с каждым оставшимся левым
+    private static long mergeCount(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int pos) {
+        long count = 0;
+        // без ветвлений по данным: на случайных входах переход почти всегда предсказывался бы неверно
+        while (lo1 < hi1 && lo2 < hi2) {
+            int x = src[lo1];
+            int y = src[lo2];
+            int right = y < x ? 1 : 0;
+            dst[pos++] = right == 1 ? y : x;
+            count += (hi1 - lo1) & -right;
+            lo1 += 1 - right;
+            lo2 += right;
+        }
+        System.arraycopy(src, lo1, dst, pos, hi1 - lo1);
+        System.arraycopy(src, lo2, dst, pos + hi1 - lo1, hi2 - lo2);
+        return count;
+    }
 
-            count += mergeSortAndCount(arr, left, mid);
-            count += mergeSortAndCount(arr, mid + 1, right);
-            count += mergeAndCount(arr, left, mid, right);
+    // Инверсии за O(n log D) деревом Фенвика по значениям, D = max - min + 1:
+    // для каждого элемента - сколько раньше встреченных строго больше него
+    static long countInversionsFenwick(int[] a) {
+        if (a.length < 2) return 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int x : a) {
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+        }
+        long range = (long) max - min + 1;
+        if (range > FENWICK_MAX_RANGE) {
+            throw new IllegalArgumentException("value range too large for Fenwick tree: " + range);
+        }
+        int[] tree = new int[(int) range + 1];
+        long count = 0;
+        for (int i = 0; i < a.length; i++) {
+            int value = a[i] - min + 1;
+            int notGreater = 0;
+            for (int k = value; k > 0; k -= k & -k) {
+                notGreater += tree[k];
+            }
+            count += i - notGreater;
+            for (int k = value; k < tree.length; k += k & -k) {
+                tree[k]++;
+            }
         }
         return count;
     }
 
-    // Функция слияния двух отсортированных половин и подсчёта инверсий
-    private int mergeAndCount(int[] arr, int left, int mid, int right) {
-        int[] leftArr = new int[mid - left + 1];
-        int[] rightArr = new int[right - mid];
+    // Параллельный подсчет: половины считаются и сортируются независимо,
+    // затем их инверсии между собой считает параллельное слияние в scratch
+    private static final class CountTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a, scratch;
+        private final int from, to;
+
+        CountTask(int[] a, int[] scratch, int from, int to) {
+            this.a = a;
+            this.scratch = scratch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                return countRange(a, scratch, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(a, scratch, from, mid);
+            left.fork();
+            long count = new CountTask(a, scratch, mid, to).compute() + left.join();
+            count += new MergeCountTask(a, from, mid, mid, to, scratch, from).compute();
+            System.arraycopy(scratch, from, a, from, to - from);
+            return count;
+        }
+    }
+
+    // Слияние с подсчетом, делимое на части: большая серия режется по медиане p, меньшая -
+    // бинарным поиском по p. Пары "левый > правый" между частями, лежащими по разные стороны p,
+    // считаются произведением размеров, остальные - рекурсивно в двух независимых подзадачах
+    private static final class MergeCountTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] src, dst;
+        private final int lo1, hi1, lo2, hi2, pos;
+
+        MergeCountTask(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int pos) {
+            this.src = src;
+            this.dst = dst;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.pos = pos;
+        }
+
+        @Override
+        protected Long compute() {
+            if ((hi1 - lo1) + (hi2 - lo2) <= PARALLEL_THRESHOLD) {
+                return mergeCount(src, lo1, hi1, lo2, hi2, dst, pos);
+            }
+            int m1, m2;
+            long cross;
+            MergeCountTask low, high;
+            if (hi1 - lo1 >= hi2 - lo2) {
+                // левые [m1, hi1) >= p > правых [lo2, m2)
+                m1 = (lo1 + hi1) >>> 1;
+                m2 = bound(src, lo2, hi2, src[m1], false);
+                cross = (long) (hi1 - m1) * (m2 - lo2);
+                low = new MergeCountTask(src, lo1, m1, lo2, m2, dst, pos);
+                high = new MergeCountTask(src, m1 + 1, hi1, m2, hi2, dst, pos + (m1 - lo1) + (m2 - lo2) + 1);
+                dst[pos + (m1 - lo1) + (m2 - lo2)] = src[m1];
+            } else {
+                // левые [m1, hi1) > p >= правых [lo2, m2]
+                m2 = (lo2 + hi2) >>> 1;
+                m1 = bound(src, lo1, hi1, src[m2], true);
+                cross = (long) (hi1 - m1) * (m2 - lo2 + 1);
+                low = new MergeCountTask(src, lo1, m1, lo2, m2, dst, pos);
+                high = new MergeCountTask(src, m1, hi1, m2 + 1, hi2, dst, pos + (m1 - lo1) + (m2 - lo2) + 1);
+                dst[pos + (m1 - lo1) + (m2 - lo2)] = src[m2];
+            }
+            low.fork();
+            return cross + high.compute() + low.join();
+        }
+
+        // первый индекс, где a[i] > key (upper) или a[i] >= key (иначе)
+        private static int bound(int[] a, int from, int to, int key, boolean upper) {
+            while (from < to) {
+                int mid = (from + to) >>> 1;
+                if (a[mid] < key || upper && a[mid] == key) {
+                    from = mid + 1;
+                } else {
+                    to = mid;
+                }
+            }
+            return from;
+        }
+    }
+
+    // Число инверсий в окне последних значений, поддерживаемое при изменениях.
+    // Значения сжимаются в ранги по заранее известному набору universe. Дерево Фенвика по рангам
+    // в каждом узле хранит не счетчик, а декартово дерево (treap) абсолютных номеров позиций
+    // элементов окна с рангами из диапазона узла; размер корня узла - прежний счетчик Фенвика.
+    // Добавление и удаление элемента - вставка/удаление номера в O(log D) деревьях,
+    // запрос "сколько левее позиции элементов с рангом меньше r" - спуск в O(log D) деревьях.
+    // Итого O(log D * log W) ожидаемо на append, evictOldest и set, память O(W log D)
+    static final class SlidingInversions {
+        private final int[] universe;       // различные значения по возрастанию
+        private final int[] roots;          // Фенвик по рангам, 1-based: корень treap узла
+        private final int capacity;
+        private final int[] ring;           // ранги окна по абсолютному номеру mod capacity
+        private long head;                  // абсолютный номер самого старого элемента
+        private long tail;                  // номер следующего добавляемого
+        private long inversions;
+
+        // пул узлов treap; узел 0 - пустое дерево, свободные узлы связаны через left
+        private long[] keys;
+        private int[] left;
+        private int[] right;
+        private int[] sizes;
+        private int[] priorities;
+        private int used = 1;
+        private int free;
+        private int seed = 0x2545F491;
+        private int splitLeft;              // результат split: ключи меньше заданного
+        private int splitRight;             // и не меньше
+
+        SlidingInversions(int[] values, int capacity) {
+            if (capacity < 1) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+            int[] sorted = values.clone();
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) sorted[distinct++] = sorted[i];
+            }
+            universe = Arrays.copyOf(sorted, distinct);
+            roots = new int[distinct + 1];
+            this.capacity = capacity;
+            ring = new int[capacity];
+            int nodes = Math.min(capacity, 1 << 12) * (33 - Integer.numberOfLeadingZeros(distinct)) + 1;
+            keys = new long[nodes];
+            left = new int[nodes];
+            right = new int[nodes];
+            sizes = new int[nodes];
+            priorities = new int[nodes];
+        }
+
+        int size() {
+            return (int) (tail - head);
+        }
+
+        long inversions() {
+            return inversions;
+        }
+
+        // Добавляет значение в конец окна; в полном окне сначала уходит самое старое
+        void append(int value) {
+            int r = rank(value);
+            if (size() == capacity) evictOldest();
+            inversions += size() - countLess(r + 1);
+            insert(tail++, r);
+        }
+
+        // Удаляет самое старое значение и возвращает его
+        int evictOldest() {
+            if (size() == 0) throw new IllegalStateException("window is empty");
+            int r = ring[slot(head)];
+            remove(head++, r);
+            inversions -= countLess(r);
+            return universe[r];
+        }
+
+        // Заменяет значение с номером offset от начала окна
+        void set(int offset, int value) {
+            if (offset < 0 || offset >= size()) {
+                throw new IllegalArgumentException("offset out of window: " + offset + ", size " + size());
+            }
+            int r = rank(value);
+            long index = head + offset;
+            int old = ring[slot(index)];
+            if (old == r) return;
+            remove(index, old);
+            inversions -= pairsWith(index, offset, old);
+            inversions += pairsWith(index, offset, r);
+            insert(index, r);
+        }
+
+        int get(int offset) {
+            if (offset < 0 || offset >= size()) {
+                throw new IllegalArgumentException("offset out of window: " + offset + ", size " + size());
+            }
+            return universe[ring[slot(head + offset)]];
+        }
+
+        private int rank(int value) {
+            int r = Arrays.binarySearch(universe, value);
+            if (r < 0) throw new IllegalArgumentException("value is not in the universe: " + value);
+            return r;
+        }
+
+        // Инверсии элемента с рангом r на позиции index (левее нее ровно offset элементов)
+        // с остальными элементами окна: левее и больше плюс правее и меньше
+        // (сам элемент уже убран из структур)
+        private long pairsWith(long index, int offset, int r) {
+            int leftLess = countLessBefore(r, index);
+            int leftNotGreater = countLessBefore(r + 1, index);
+            return (offset - leftNotGreater) + (countLess(r) - leftLess);
+        }
+
+        private void insert(long index, int r) {
+            ring[slot(index)] = r;
+            for (int k = r + 1; k < roots.length; k += k & -k) {
+                roots[k] = insertNode(roots[k], newNode(index));
+            }
+        }
+
+        private void remove(long index, int r) {
+            for (int k = r + 1; k < roots.length; k += k & -k) {
+                roots[k] = removeNode(roots[k], index);
+            }
+        }
 
-        System.arraycopy(arr, left, leftArr, 0, leftArr.length);
-        System.arraycopy(arr, mid + 1, rightArr, 0, rightArr.length);
+        private int slot(long index) {
+            return (int) (index % capacity);
+        }
 
-        int i = 0, j = 0, k = left, swaps = 0;
+        // сколько элементов окна с рангом меньше r
+        private int countLess(int r) {
+            int count = 0;
+            for (int k = r; k > 0; k -= k & -k) {
+                count += sizes[roots[k]];
+            }
+            return count;
+        }
 
-        while (i < leftArr.length && j < rightArr.length) {
-            if (leftArr[i] <= rightArr[j]) {
-                arr[k++] = leftArr[i++];
+        // сколько элементов окна с рангом меньше r стоят левее позиции index
+        private int countLessBefore(int r, long index) {
+            int count = 0;
+            for (int k = r; k > 0; k -= k & -k) {
+                int t = roots[k];
+                while (t != 0) {
+                    if (keys[t] < index) {
+                        count += sizes[left[t]] + 1;
+                        t = right[t];
+                    } else {
+                        t = left[t];
+                    }
+                }
+            }
+            return count;
+        }
+
+        private int newNode(long key) {
+            int x;
+            if (free != 0) {
+                x = free;
+                free = left[x];
             } else {
-                arr[k++] = rightArr[j++];
-                swaps += (leftArr.length - i); // все оставшиеся элементы в leftArr больше rightArr[j]
+                if (used == keys.length) grow();
+                x = used++;
             }
+            // xorshift: приоритеты случайны, ожидаемая глубина дерева O(log n)
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            keys[x] = key;
+            left[x] = 0;
+            right[x] = 0;
+            sizes[x] = 1;
+            priorities[x] = seed;
+            return x;
         }
 
-        while (i < leftArr.length) {
-            arr[k++] = leftArr[i++];
+        private void grow() {
+            int n = keys.length * 2;
+            keys = Arrays.copyOf(keys, n);
+            left = Arrays.copyOf(left, n);
+            right = Arrays.copyOf(right, n);
+            sizes = Arrays.copyOf(sizes, n);
+            priorities = Arrays.copyOf(priorities, n);
         }
 
-        while (j < rightArr.length) {
-            arr[k++] = rightArr[j++];
+        // Вставка узла x: спуск по ключу до места, где приоритет x больше, там поддерево делится по ключу x
+        private int insertNode(int t, int x) {
+            if (t == 0) return x;
+            if (priorities[x] > priorities[t]) {
+                split(t, keys[x]);
+                left[x] = splitLeft;
+                right[x] = splitRight;
+                sizes[x] = sizes[splitLeft] + sizes[splitRight] + 1;
+                return x;
+            }
+            if (keys[x] < keys[t]) {
+                left[t] = insertNode(left[t], x);
+            } else {
+                right[t] = insertNode(right[t], x);
+            }
+            sizes[t]++;
+            return t;
+        }
+
+        private int removeNode(int t, long key) {
+            if (keys[t] == key) {
+                int merged = merge(left[t], right[t]);
+                left[t] = free;
+                free = t;
+                return merged;
+            }
+            if (key < keys[t]) {
+                left[t] = removeNode(left[t], key);
+            } else {
+                right[t] = removeNode(right[t], key);
+            }
+            sizes[t]--;
+            return t;
         }
 
-        return swaps;
+        private void split(int t, long key) {
+            if (t == 0) {
+                splitLeft = 0;
+                splitRight = 0;
+            } else if (keys[t] < key) {
+                split(right[t], key);
+                right[t] = splitLeft;
+                sizes[t] = sizes[left[t]] + sizes[right[t]] + 1;
+                splitLeft = t;
+            } else {
+                split(left[t], key);
+                left[t] = splitRight;
+                sizes[t] = sizes[left[t]] + sizes[right[t]] + 1;
+                splitRight = t;
+            }
+        }
+
+        // все ключи a меньше всех ключей b
+        private int merge(int a, int b) {
+            if (a == 0) return b;
+            if (b == 0) return a;
+            if (priorities[a] > priorities[b]) {
+                right[a] = merge(right[a], b);
+                sizes[a] = sizes[left[a]] + sizes[right[a]] + 1;
+                return a;
+            }
+            left[b] = merge(a, left[b]);
+            sizes[b] = sizes[left[b]] + sizes[right[b]] + 1;
+            return b;
+        }
     }
 }
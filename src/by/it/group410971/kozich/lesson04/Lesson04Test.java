@@ -4,7 +4,16 @@ package by.it.group410971.kozich.lesson04;
 import org.junit.Test;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertTrue;
 
@@ -24,6 +33,60 @@ public class Lesson04Test {
         assertTrue("A failed", ok);
     }
 
+    @Test
+    public void checkA_eytzinger() throws Exception {
+        A_BinaryFind instance = new A_BinaryFind();
+        Random random = new Random(15);
+        boolean ok = true;
+        for (int n = 0; n <= 70; n++) {
+            int[] a = new int[n];
+            for (int i = 0; i < n; i++) {
+                a[i] = (i == 0 ? -5 : a[i - 1]) + 1 + random.nextInt(4);
+            }
+            int[] queries = new int[100];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = random.nextInt(4 * n + 10) - 8;
+            }
+            A_BinaryFind.EytzingerIndex index = new A_BinaryFind.EytzingerIndex(a);
+            int[] batch = index.findAll(queries, false);
+            int[] parallel = index.findAll(queries, true);
+            for (int i = 0; i < queries.length; i++) {
+                int expected = instance.binarySearch(a, queries[i]);
+                ok = ok && batch[i] == expected && parallel[i] == expected
+                        && index.find(queries[i]) == expected;
+            }
+        }
+        assertTrue("A eytzinger failed", ok);
+    }
+
+    @Test
+    public void checkA_sortedQueries() throws Exception {
+        A_BinaryFind instance = new A_BinaryFind();
+        Random random = new Random(16);
+        boolean ok = true;
+        for (int n = 0; n <= 200; n += 7) {
+            int[] a = new int[n];
+            for (int i = 0; i < n; i++) {
+                a[i] = (i == 0 ? Integer.MIN_VALUE + 3 : a[i - 1]) + 1 + random.nextInt(5);
+            }
+            int[] queries = new int[150];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = n == 0 || random.nextBoolean() ? random.nextInt() : a[random.nextInt(n)];
+            }
+            int[] mixed = instance.findAll(a, queries);
+            for (int i = 0; i < queries.length; i++) {
+                ok = ok && mixed[i] == instance.binarySearch(a, queries[i]);
+            }
+            Arrays.sort(queries);
+            int[] sorted = instance.findAll(a, queries);
+            for (int i = 0; i < queries.length; i++) {
+                int expected = instance.binarySearch(a, queries[i]);
+                ok = ok && sorted[i] == expected && instance.interpolationSearch(a, queries[i]) == expected;
+            }
+        }
+        assertTrue("A sorted queries failed", ok);
+    }
+
 
     @Test
     public void checkB() throws Exception {
@@ -42,6 +105,89 @@ public class Lesson04Test {
         assertTrue("B failed", ok);
     }
 
+    @Test
+    public void checkB_primitive() throws Exception {
+        Random random = new Random(17);
+        int[] sizes = {0, 1, 2, 31, 32, 33, 100, 1000, 8191, 8193, 50_000, 200_000};
+        boolean ok = true;
+        for (int n : sizes) {
+            for (int pattern = 0; pattern < 4; pattern++) {
+                int[] ints = new int[n];
+                long[] longs = new long[n];
+                for (int i = 0; i < n; i++) {
+                    switch (pattern) {
+                        case 0: ints[i] = random.nextInt(); break;
+                        case 1: ints[i] = n - i; break;
+                        case 2: ints[i] = random.nextInt(5); break;
+                        default: ints[i] = i % 1000 + (random.nextInt(50) == 0 ? -random.nextInt(1000) : 0);
+                    }
+                    longs[i] = (long) ints[i] * random.nextInt(1 << 20) - random.nextInt();
+                }
+                int[] expected = ints.clone();
+                Arrays.sort(expected);
+                long[] expectedLongs = longs.clone();
+                Arrays.sort(expectedLongs);
+                int[] sequential = ints.clone();
+                B_MergeSort.sort(sequential);
+                int[] parallel = ints.clone();
+                B_MergeSort.parallelSort(parallel);
+                long[] sequentialLongs = longs.clone();
+                B_MergeSort.sort(sequentialLongs, new long[n + 5], false);
+                long[] parallelLongs = longs.clone();
+                B_MergeSort.parallelSort(parallelLongs);
+                ok = ok && Arrays.equals(expected, sequential) && Arrays.equals(expected, parallel)
+                        && Arrays.equals(expectedLongs, sequentialLongs) && Arrays.equals(expectedLongs, parallelLongs);
+            }
+        }
+        assertTrue("B primitive failed", ok);
+    }
+
+    @Test
+    public void checkB_external() throws Exception {
+        Path dir = Files.createTempDirectory("lesson04");
+        Path input = dir.resolve("input.bin");
+        Path output = dir.resolve("output.bin");
+        Random random = new Random(18);
+        boolean ok = true;
+        for (int n : new int[]{0, 1, 999, 1000, 23_456}) {
+            int[] ints = new int[n];
+            ByteBuffer bytes = ByteBuffer.allocate(n * Integer.BYTES);
+            for (int i = 0; i < n; i++) {
+                ints[i] = random.nextInt(n % 2 == 0 ? Integer.MAX_VALUE : 100) - 50;
+                bytes.putInt(ints[i]);
+            }
+            Files.write(input, bytes.array());
+            new B_MergeSort.ExternalSort(1000, 3, dir).sortInts(input, output);
+            Arrays.sort(ints);
+            IntBuffer sorted = ByteBuffer.wrap(Files.readAllBytes(output)).asIntBuffer();
+            int[] result = new int[sorted.remaining()];
+            sorted.get(result);
+            ok = ok && Arrays.equals(ints, result);
+
+            long[] longs = new long[n];
+            bytes = ByteBuffer.allocate(n * Long.BYTES);
+            for (int i = 0; i < n; i++) {
+                longs[i] = random.nextLong();
+                bytes.putLong(longs[i]);
+            }
+            Files.write(input, bytes.array());
+            new B_MergeSort.ExternalSort(777, 2, dir).sortLongs(input, output);
+            Arrays.sort(longs);
+            LongBuffer sortedLongs = ByteBuffer.wrap(Files.readAllBytes(output)).asLongBuffer();
+            long[] longResult = new long[sortedLongs.remaining()];
+            sortedLongs.get(longResult);
+            ok = ok && Arrays.equals(longs, longResult);
+        }
+        Files.delete(input);
+        Files.delete(output);
+        // временные серии удалены
+        try (Stream<Path> rest = Files.list(dir)) {
+            ok = ok && rest.count() == 0;
+        }
+        Files.delete(dir);
+        assertTrue("B external failed", ok);
+    }
+
 
     @Test
     public void checkC() throws Exception {
@@ -55,4 +201,120 @@ public class Lesson04Test {
 
     }
 
+    @Test
+    public void checkC_long() throws Exception {
+        Random random = new Random(19);
+        boolean ok = true;
+        for (int n : new int[]{0, 1, 2, 31, 33, 100, 1500}) {
+            for (int domain : new int[]{3, 1_000_000_000}) {
+                int[] a = new int[n];
+                for (int i = 0; i < n; i++) {
+                    a[i] = random.nextInt(domain) - domain / 2;
+                }
+                long expected = 0;
+                for (int i = 0; i < n; i++) {
+                    for (int j = i + 1; j < n; j++) {
+                        if (a[i] > a[j]) expected++;
+                    }
+                }
+                int[] copy = a.clone();
+                ok = ok && C_GetInversions.countInversions(a) == expected
+                        && C_GetInversions.countInversions(copy, new int[n], false) == expected
+                        && (domain > 1000 || C_GetInversions.countInversionsFenwick(a) == expected);
+            }
+        }
+        // больше int: n = 100000 по убыванию дает n(n-1)/2 инверсий
+        int n = 100_000;
+        int[] reversed = new int[n];
+        for (int i = 0; i < n; i++) {
+            reversed[i] = n - i;
+        }
+        long expected = (long) n * (n - 1) / 2;
+        ok = ok && C_GetInversions.countInversions(reversed) == expected
+                && C_GetInversions.countInversionsFenwick(reversed) == expected
+                && C_GetInversions.countInversions(reversed.clone(), new int[n], true) == expected;
+        // параллельный подсчет совпадает с последовательным, массив отсортирован
+        int[] a = new int[300_000];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = random.nextInt(random.nextBoolean() ? 100 : Integer.MAX_VALUE);
+        }
+        int[] sorted = a.clone();
+        Arrays.sort(sorted);
+        int[] parallel = a.clone();
+        long sequentialCount = C_GetInversions.countInversions(a, new int[a.length], false);
+        ok = ok && C_GetInversions.countInversions(parallel, new int[a.length], true) == sequentialCount
+                && Arrays.equals(sorted, a) && Arrays.equals(sorted, parallel);
+        assertTrue("C long failed", ok);
+    }
+
+    @Test
+    public void checkC_sliding() throws Exception {
+        Random random = new Random(20);
+        int[] universe = {-7, 0, 3, 5, 8, 13, 21, 100, 1_000_000};
+        boolean ok = true;
+        for (int capacity : new int[]{1, 5, 40, 300}) {
+            C_GetInversions.SlidingInversions window = new C_GetInversions.SlidingInversions(universe, capacity);
+            List<Integer> expected = new ArrayList<>();
+            for (int step = 0; step < 3000; step++) {
+                int value = universe[random.nextInt(universe.length)];
+                int op = random.nextInt(10);
+                if (op < 6) {
+                    window.append(value);
+                    expected.add(value);
+                    if (expected.size() > capacity) expected.remove(0);
+                } else if (op < 8 && !expected.isEmpty()) {
+                    ok = ok && window.evictOldest() == expected.remove(0);
+                } else if (!expected.isEmpty()) {
+                    int offset = random.nextInt(expected.size());
+                    window.set(offset, value);
+                    expected.set(offset, value);
+                }
+                int[] copy = new int[expected.size()];
+                for (int i = 0; i < copy.length; i++) {
+                    copy[i] = expected.get(i);
+                }
+                ok = ok && window.size() == copy.length
+                        && window.inversions() == C_GetInversions.countInversions(copy)
+                        && (copy.length == 0 || window.get(copy.length - 1) == copy[copy.length - 1]);
+            }
+        }
+        assertTrue("C sliding failed", ok);
+    }
+
+    // Большое окно: 2^17 элементов и 2^18 операций. При O(W) на замену это ~10^10 шагов,
+    // при O(log D * log W) - секунда; итог сверяется с подсчетом слиянием по содержимому окна
+    @Test(timeout = 10000)
+    public void checkC_slidingLarge() throws Exception {
+        Random random = new Random(21);
+        int[] universe = new int[1 << 16];
+        for (int i = 0; i < universe.length; i++) {
+            universe[i] = i * 3 - 50_000;
+        }
+        int capacity = 1 << 17;
+        C_GetInversions.SlidingInversions window = new C_GetInversions.SlidingInversions(universe, capacity);
+        for (int i = 0; i < capacity; i++) {
+            window.append(universe[random.nextInt(universe.length)]);
+        }
+        boolean ok = window.size() == capacity;
+        for (int step = 0; step < capacity; step++) {
+            int value = universe[random.nextInt(universe.length)];
+            if (step % 2 == 0) {
+                // замены ближе к концу окна - самые дорогие для счета "левее позиции"
+                window.set(capacity - 1 - random.nextInt(1 << 10), value);
+            } else {
+                window.append(value);
+                ok = ok && window.get(capacity - 1) == value && window.size() == capacity;
+            }
+        }
+        int[] copy = new int[window.size()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = window.get(i);
+        }
+        long expected = C_GetInversions.countInversions(copy);
+        ok = ok && window.inversions() == expected;
+        while (window.size() > 0) {
+            window.evictOldest();
+        }
+        assertTrue("C sliding large failed", ok && window.inversions() == 0);
+    }
 }
@@ -3,7 +3,10 @@ package by.it.group410971.kozich.lesson05;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /*
 Видеорегистраторы и площадь.
@@ -37,6 +40,13 @@ import java.util.Scanner;
 
 public class A_QSort {
 
+    // порядок типов событий при равной координате
+    private static final int START = 0;
+    private static final int POINT = 1;
+    private static final int STOP = 2;
+    private static final int TYPE_SHIFT = 30;
+    private static final int INDEX_MASK = (1 << TYPE_SHIFT) - 1;
+
     public static void main(String[] args) throws FileNotFoundException {
         InputStream stream = A_QSort.class.getResourceAsStream("dataA.txt");
         A_QSort instance = new A_QSort();
@@ -44,6 +54,37 @@ public class A_QSort {
         for (int index : result) {
             System.out.print(index + " ");
         }
+        System.out.println();
+
+        // 10^7 отрезков и 10^7 точек: два бинарных поиска на точку против одного прохода по событиям
+        int n = 10_000_000;
+        Random random = new Random(21);
+        int[] starts = new int[n];
+        int[] stops = new int[n];
+        int[] points = new int[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = random.nextInt(2_000_000_000) - 1_000_000_000;
+            stops[i] = starts[i] + random.nextInt(1_000_000);
+            points[i] = random.nextInt(2_000_000_000) - 1_000_000_000;
+        }
+        long startTime = System.currentTimeMillis();
+        int[] sortedStarts = starts.clone();
+        int[] sortedStops = stops.clone();
+        Arrays.sort(sortedStarts);
+        Arrays.sort(sortedStops);
+        long checksum = 0;
+        for (int point : points) {
+            checksum += instance.upperBound(sortedStarts, point) - instance.lowerBound(sortedStops, point);
+        }
+        System.out.printf("бинарные поиски: %d мс\n", System.currentTimeMillis() - startTime);
+        for (boolean parallel : new boolean[]{false, true}) {
+            startTime = System.currentTimeMillis();
+            int[] covered = sweep(starts, stops, points, parallel);
+            long time = System.currentTimeMillis() - startTime;
+            long sum = 0;
+            for (int c : covered) sum += c;
+            System.out.printf("sweep%s: %d мс, разница=%d\n", parallel ? " параллельно" : "", time, checksum - sum);
+        }
     }
 
     int[] getAccessory(InputStream stream) throws FileNotFoundException {
@@ -52,48 +93,19 @@ public class A_QSort {
         int n = scanner.nextInt();
         int m = scanner.nextInt();
 
-        Segment[] segments = new Segment[n];
-        for (int i = 0; i < n; i++) {
-            int start = scanner.nextInt();
-            int stop = scanner.nextInt();
-            if (start > stop) { // на всякий случай, если придут в обратном порядке
-                int temp = start;
-                start = stop;
-                stop = temp;
-            }
-            segments[i] = new Segment(start, stop);
-        }
-
-        int[] points = new int[m];
-        for (int i = 0; i < m; i++) {
-            points[i] = scanner.nextInt();
-        }
-
-        // Отсортируем сегменты по start и по stop отдельно
         int[] starts = new int[n];
         int[] stops = new int[n];
         for (int i = 0; i < n; i++) {
-            starts[i] = segments[i].start;
-            stops[i] = segments[i].stop;
+            starts[i] = scanner.nextInt();
+            stops[i] = scanner.nextInt();
         }
-        Arrays.sort(starts);
-        Arrays.sort(stops);
-
-        int[] result = new int[m];
-
-        // Для каждой точки считаем:
-        // количество отрезков, у которых start <= point
-        // минус количество отрезков, у которых stop < point
-        // разница и есть количество отрезков, покрывающих точку
 
+        int[] points = new int[m];
         for (int i = 0; i < m; i++) {
-            int point = points[i];
-            int startsCount = upperBound(starts, point);
-            int stopsCount = lowerBound(stops, point);
-            result[i] = startsCount - stopsCount;
+            points[i] = scanner.nextInt();
         }
 
-        return result;
+        return sweep(starts, stops, points, false);
     }
 
     // Возвращает индекс первого элемента > key (кол-во элементов <= key)
@@ -124,18 +136,150 @@ public class A_QSort {
         return left;
     }
 
-    private class Segment implements Comparable<Segment> {
-        int start;
-        int stop;
+    // Сканирующая прямая: концы отрезков и точки кодируются в одно событие long
+    // (координата | тип | номер точки), все события сортируются одной поразрядной сортировкой,
+    // и один проход считает покрытие: начало +1, конец -1, точка читает счетчик.
+    // При равной координате начало идет раньше точки, а точка раньше конца - границы включены.
+    // parallel делит ось на полосы по квантилям координат и обрабатывает их независимо
+    static int[] sweep(int[] starts, int[] stops, int[] points, boolean parallel) {
+        if (starts.length != stops.length) {
+            throw new IllegalArgumentException("starts and stops differ in length: " + starts.length + " != " + stops.length);
+        }
+        if (points.length > INDEX_MASK + 1) {
+            throw new IllegalArgumentException("too many points: " + points.length);
+        }
+        int slabs = parallel ? Math.max(1, ForkJoinPool.getCommonPoolParallelism() * 4) : 1;
+        int[] bounds = slabs > 1 ? slabBounds(starts, points, slabs) : new int[0];
+        slabs = bounds.length + 1;
 
-        Segment(int start, int stop) {
-            this.start = start;
-            this.stop = stop;
+        // события раскладываются по полосам: подсчет размеров, затем заполнение по смещениям
+        int[] offsets = new int[slabs + 1];
+        for (int i = 0; i < starts.length; i++) {
+            offsets[slabOf(bounds, Math.min(starts[i], stops[i])) + 1]++;
+            offsets[slabOf(bounds, Math.max(starts[i], stops[i])) + 1]++;
+        }
+        for (int point : points) {
+            offsets[slabOf(bounds, point) + 1]++;
+        }
+        for (int k = 0; k < slabs; k++) {
+            offsets[k + 1] += offsets[k];
+        }
+        long[] events = new long[offsets[slabs]];
+        int[] fill = Arrays.copyOf(offsets, slabs);
+        // initial[k] - отрезки, покрывающие левую границу полосы k (начались левее, закончились не раньше)
+        int[] initial = new int[slabs + 1];
+        for (int i = 0; i < starts.length; i++) {
+            int a = Math.min(starts[i], stops[i]);
+            int b = Math.max(starts[i], stops[i]);
+            int slabA = slabOf(bounds, a);
+            int slabB = slabOf(bounds, b);
+            events[fill[slabA]++] = event(a, START, 0);
+            events[fill[slabB]++] = event(b, STOP, 0);
+            initial[slabA + 1]++;
+            initial[slabB + 1]--;
         }
+        for (int i = 0; i < points.length; i++) {
+            int slab = slabOf(bounds, points[i]);
+            events[fill[slab]++] = event(points[i], POINT, i);
+        }
+        for (int k = 0; k < slabs; k++) {
+            initial[k + 1] += initial[k];
+        }
+
+        int[] result = new int[points.length];
+        long[] scratch = new long[events.length];
+        IntStream range = IntStream.range(0, slabs);
+        if (parallel) range = range.parallel();
+        range.forEach(k -> {
+            radixSort(events, scratch, offsets[k], offsets[k + 1]);
+            int covered = initial[k];
+            for (int i = offsets[k]; i < offsets[k + 1]; i++) {
+                long e = events[i];
+                int type = (int) (e >>> TYPE_SHIFT) & 3;
+                if (type == START) {
+                    covered++;
+                } else if (type == STOP) {
+                    covered--;
+                } else {
+                    result[(int) (e & INDEX_MASK)] = covered;
+                }
+            }
+        });
+        return result;
+    }
+
+    // Событие: координата со сдвигом знака в старших 32 битах, тип в битах 30-31, номер точки в 0-29
+    private static long event(int x, int type, int index) {
+        return ((long) (x ^ Integer.MIN_VALUE) << 32) | ((long) type << TYPE_SHIFT) | index;
+    }
+
+    // Номер полосы для координаты x: сколько границ полос не больше x
+    private static int slabOf(int[] bounds, int x) {
+        int left = 0, right = bounds.length;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (bounds[mid] <= x) {
+                left = mid + 1;
+            } else {
+                right = mid;
+            }
+        }
+        return left;
+    }
 
-        @Override
-        public int compareTo(Segment o) {
-            return Integer.compare(this.start, o.start);
+    // Границы полос - квантили равномерной выборки из начал отрезков и точек
+    private static int[] slabBounds(int[] starts, int[] points, int slabs) {
+        int samples = Math.min(starts.length + points.length, slabs * 64);
+        if (samples == 0) return new int[0];
+        int[] sample = new int[samples];
+        long total = (long) starts.length + points.length;
+        for (int i = 0; i < samples; i++) {
+            long j = total * i / samples;
+            sample[i] = j < starts.length ? starts[(int) j] : points[(int) (j - starts.length)];
+        }
+        Arrays.sort(sample);
+        int[] bounds = new int[slabs - 1];
+        int count = 0;
+        for (int k = 1; k < slabs; k++) {
+            int bound = sample[(int) ((long) samples * k / slabs)];
+            if (count == 0 || bound > bounds[count - 1]) bounds[count++] = bound;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    // LSD-сортировка событий по старшим 34 битам (координата и тип) цифрами по 11-12 бит;
+    // номер точки в младших битах порядок не задает. Проходы с одной цифрой на всех пропускаются
+    static void radixSort(long[] a, long[] scratch, int from, int to) {
+        long[] src = a;
+        long[] dst = scratch;
+        int[] count = new int[1 << 12];
+        for (int shift = TYPE_SHIFT; shift < 64; ) {
+            int bits = shift == 52 ? 12 : 11;
+            int mask = (1 << bits) - 1;
+            Arrays.fill(count, 0, mask + 1, 0);
+            for (int i = from; i < to; i++) {
+                count[(int) (src[i] >>> shift) & mask]++;
+            }
+            if (to > from && count[(int) (src[from] >>> shift) & mask] == to - from) {
+                shift += bits;
+                continue;
+            }
+            for (int d = 0, sum = from; d <= mask; d++) {
+                int c = count[d];
+                count[d] = sum;
+                sum += c;
+            }
+            for (int i = from; i < to; i++) {
+                long e = src[i];
+                dst[count[(int) (e >>> shift) & mask]++] = e;
+            }
+            long[] t = src;
+            src = dst;
+            dst = t;
+            shift += bits;
+        }
+        if (src != a) {
+            System.arraycopy(src, from, a, from, to - from);
         }
     }
 }
@@ -2,7 +2,11 @@ package by.it.group410971.kozich.lesson05;
 
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /*
 Первая строка содержит число 1<=n<=10000, вторая - n натуральных чисел, не превышающих 10.
@@ -16,6 +20,9 @@ import java.util.Scanner;
 
 public class B_CountSort {
 
+    // меньше элементов на кусок параллельной гистограммы не выделяется
+    private static final int PARALLEL_CHUNK = 1 << 16;
+
     public static void main(String[] args) throws FileNotFoundException {
         InputStream stream = B_CountSort.class.getResourceAsStream("dataB.txt");
         B_CountSort instance = new B_CountSort();
@@ -23,6 +30,36 @@ public class B_CountSort {
         for (int index : result) {
             System.out.print(index + " ");
         }
+        System.out.println();
+
+        // 2*10^7 значений: узкий диапазон (подсчет), весь int и весь long (поразрядная)
+        int n = 20_000_000;
+        Random random = new Random(24);
+        int[] narrow = new int[n];
+        int[] wide = new int[n];
+        long[] longs = new long[n];
+        for (int i = 0; i < n; i++) {
+            narrow[i] = random.nextInt(100_000) - 50_000;
+            wide[i] = random.nextInt();
+            longs[i] = random.nextLong();
+        }
+        for (int[] data : new int[][]{narrow, wide}) {
+            System.out.printf("int[] Arrays.sort: %d мс, sort: %d мс, parallel: %d мс\n",
+                    time(() -> Arrays.sort(data.clone())),
+                    time(() -> sort(data.clone(), false)),
+                    time(() -> sort(data.clone(), true)));
+        }
+        System.out.printf("long[] Arrays.sort: %d мс, sort: %d мс, parallel: %d мс\n",
+                time(() -> Arrays.sort(longs.clone())),
+                time(() -> sort(longs.clone(), false)),
+                time(() -> sort(longs.clone(), true)));
+    }
+
+    // время вместе с clone() входного массива, одинаковое для всех вариантов
+    private static long time(Runnable task) {
+        long startTime = System.currentTimeMillis();
+        task.run();
+        return System.currentTimeMillis() - startTime;
     }
 
     int[] countSort(InputStream stream) throws FileNotFoundException {
@@ -34,26 +71,215 @@ public class B_CountSort {
             points[i] = scanner.nextInt();
         }
 
-        // Максимальное значение по условию - 10
-        int maxValue = 10;
+        sort(points, false);
+        return points;
+    }
 
-        // Массив для подсчёта количества каждого числа
-        int[] count = new int[maxValue + 1];
+    // Сортировка любых int: по выборке оценивается разброс значений; если он не больше
+    // countingLimit(n) (и подтверждается точным проходом) - подсчетом за O(n + range),
+    // иначе - поразрядная LSD. parallel распараллеливает гистограммы и раскладку поразрядной
+    static void sort(int[] a) {
+        sort(a, false);
+    }
 
-        // Подсчёт количества каждого числа
-        for (int num : points) {
-            count[num]++;
+    static void sort(int[] a, boolean parallel) {
+        if (a.length < 2) return;
+        int sampleMin = a[0];
+        int sampleMax = a[0];
+        for (int i = 0; i < a.length; i += sampleStep(a.length)) {
+            sampleMin = Math.min(sampleMin, a[i]);
+            sampleMax = Math.max(sampleMax, a[i]);
         }
+        long limit = countingLimit(a.length);
+        if ((long) sampleMax - sampleMin <= limit) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int x : a) {
+                min = Math.min(min, x);
+                max = Math.max(max, x);
+            }
+            if ((long) max - min <= limit) {
+                countingSort(a, min, (int) ((long) max - min + 1));
+                return;
+            }
+        }
+        radixSort(a, parallel);
+    }
 
-        // Формируем отсортированный массив
+    private static void countingSort(int[] a, int min, int range) {
+        int[] count = new int[range];
+        for (int x : a) {
+            count[x - min]++;
+        }
         int index = 0;
-        for (int num = 1; num <= maxValue; num++) {
-            while (count[num] > 0) {
-                points[index++] = num;
-                count[num]--;
+        for (int v = 0; v < range; v++) {
+            for (int c = count[v]; c > 0; c--) {
+                a[index++] = min + v;
             }
         }
+    }
 
-        return points;
+    // LSD по цифрам из digitBits(n) бит, ключ - значение с инвертированным знаковым битом
+    // (отрицательные идут раньше). Каждый проход: гистограмма по кускам, смещения куска
+    // внутри каждой цифры, раскладка - куски независимы и в parallel идут в разных потоках.
+    // Проход, в котором у всех элементов одна и та же цифра, пропускается
+    private static void radixSort(int[] a, boolean parallel) {
+        int n = a.length;
+        int bits = digitBits(n);
+        int chunks = chunkCount(n, parallel);
+        int[][] counts = new int[chunks][1 << bits];
+        int[] src = a;
+        int[] dst = new int[n];
+        for (int shift = 0; shift < Integer.SIZE; shift += bits) {
+            int digitShift = shift;
+            int mask = (1 << Math.min(bits, Integer.SIZE - shift)) - 1;
+            int[] from = src;
+            int[] to = dst;
+            chunks(chunks, parallel).forEach(c -> {
+                int[] count = counts[c];
+                Arrays.fill(count, 0);
+                for (int i = chunkStart(n, chunks, c), end = chunkStart(n, chunks, c + 1); i < end; i++) {
+                    count[((from[i] ^ Integer.MIN_VALUE) >>> digitShift) & mask]++;
+                }
+            });
+            if (!offsets(counts, ((from[0] ^ Integer.MIN_VALUE) >>> digitShift) & mask, n)) continue;
+            chunks(chunks, parallel).forEach(c -> {
+                int[] offset = counts[c];
+                for (int i = chunkStart(n, chunks, c), end = chunkStart(n, chunks, c + 1); i < end; i++) {
+                    int x = from[i];
+                    to[offset[((x ^ Integer.MIN_VALUE) >>> digitShift) & mask]++] = x;
+                }
+            });
+            src = to;
+            dst = from;
+        }
+        if (src != a) {
+            System.arraycopy(src, 0, a, 0, n);
+        }
+    }
+
+    // То же для long
+    static void sort(long[] a) {
+        sort(a, false);
+    }
+
+    static void sort(long[] a, boolean parallel) {
+        if (a.length < 2) return;
+        long sampleMin = a[0];
+        long sampleMax = a[0];
+        for (int i = 0; i < a.length; i += sampleStep(a.length)) {
+            sampleMin = Math.min(sampleMin, a[i]);
+            sampleMax = Math.max(sampleMax, a[i]);
+        }
+        long limit = countingLimit(a.length);
+        if (Long.compareUnsigned(sampleMax - sampleMin, limit) <= 0) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (long x : a) {
+                min = Math.min(min, x);
+                max = Math.max(max, x);
+            }
+            if (Long.compareUnsigned(max - min, limit) <= 0) {
+                countingSort(a, min, (int) (max - min + 1));
+                return;
+            }
+        }
+        radixSort(a, parallel);
+    }
+
+    private static void countingSort(long[] a, long min, int range) {
+        int[] count = new int[range];
+        for (long x : a) {
+            count[(int) (x - min)]++;
+        }
+        int index = 0;
+        for (int v = 0; v < range; v++) {
+            for (int c = count[v]; c > 0; c--) {
+                a[index++] = min + v;
+            }
+        }
+    }
+
+    private static void radixSort(long[] a, boolean parallel) {
+        int n = a.length;
+        int bits = digitBits(n);
+        int chunks = chunkCount(n, parallel);
+        int[][] counts = new int[chunks][1 << bits];
+        long[] src = a;
+        long[] dst = new long[n];
+        for (int shift = 0; shift < Long.SIZE; shift += bits) {
+            int digitShift = shift;
+            int mask = (1 << Math.min(bits, Long.SIZE - shift)) - 1;
+            long[] from = src;
+            long[] to = dst;
+            chunks(chunks, parallel).forEach(c -> {
+                int[] count = counts[c];
+                Arrays.fill(count, 0);
+                for (int i = chunkStart(n, chunks, c), end = chunkStart(n, chunks, c + 1); i < end; i++) {
+                    count[(int) ((from[i] ^ Long.MIN_VALUE) >>> digitShift) & mask]++;
+                }
+            });
+            if (!offsets(counts, (int) ((from[0] ^ Long.MIN_VALUE) >>> digitShift) & mask, n)) continue;
+            chunks(chunks, parallel).forEach(c -> {
+                int[] offset = counts[c];
+                for (int i = chunkStart(n, chunks, c), end = chunkStart(n, chunks, c + 1); i < end; i++) {
+                    long x = from[i];
+                    to[offset[(int) ((x ^ Long.MIN_VALUE) >>> digitShift) & mask]++] = x;
+                }
+            });
+            src = to;
+            dst = from;
+        }
+        if (src != a) {
+            System.arraycopy(src, 0, a, 0, n);
+        }
+    }
+
+    // Превращает гистограммы кусков в стартовые позиции: цифра за цифрой, внутри цифры - по кускам,
+    // так раскладка устойчива. false, если все n элементов с одной цифрой и проход не нужен
+    private static boolean offsets(int[][] counts, int firstDigit, int n) {
+        int same = 0;
+        for (int[] count : counts) {
+            same += count[firstDigit];
+        }
+        if (same == n) return false;
+        int sum = 0;
+        for (int d = 0; d < counts[0].length; d++) {
+            for (int[] count : counts) {
+                int c = count[d];
+                count[d] = sum;
+                sum += c;
+            }
+        }
+        return true;
+    }
+
+    // подсчет выгоднее, пока массив счетчиков не больше самого массива (и не больше 2^24)
+    private static long countingLimit(int n) {
+        return Math.min(1 << 24, Math.max(1 << 8, n)) - 1;
+    }
+
+    // не больше ~1024 элементов в выборке
+    private static int sampleStep(int n) {
+        return Math.max(1, n >> 10);
+    }
+
+    // короткие массивы - байтовые цифры (гистограмма в L1), длинные - 16 бит (меньше проходов)
+    private static int digitBits(int n) {
+        return n < 1 << 12 ? 8 : n < 1 << 22 ? 11 : 16;
+    }
+
+    private static int chunkCount(int n, boolean parallel) {
+        if (!parallel) return 1;
+        return Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, n / PARALLEL_CHUNK));
+    }
+
+    private static int chunkStart(int n, int chunks, int c) {
+        return (int) ((long) n * c / chunks);
+    }
+
+    private static IntStream chunks(int chunks, boolean parallel) {
+        IntStream range = IntStream.range(0, chunks);
+        return parallel ? range.parallel() : range;
     }
 }
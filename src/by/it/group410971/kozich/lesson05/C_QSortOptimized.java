@@ -2,7 +2,11 @@ package by.it.group410971.kozich.lesson05;
 
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /*
 Видеорегистраторы и площадь 2.
@@ -29,6 +33,11 @@ Sample Output:
 
 public class C_QSortOptimized {
 
+    // диапазоны короче сортируются вставками
+    private static final int INSERTION_THRESHOLD = 32;
+    // диапазоны короче не делятся между потоками
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
     public static void main(String[] args) throws FileNotFoundException {
         InputStream stream = C_QSortOptimized.class.getResourceAsStream("dataC.txt");
         C_QSortOptimized instance = new C_QSortOptimized();
@@ -36,120 +45,362 @@ public class C_QSortOptimized {
         for (int index : result) {
             System.out.print(index + " ");
         }
+        System.out.println();
+
+        // длинные перекрывающиеся отрезки: индекс строится один раз и отвечает на разные наборы точек
+        int n = 5_000_000;
+        Random random = new Random(22);
+        int[] starts = new int[n];
+        int[] stops = new int[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = random.nextInt(1_000_000);
+            stops[i] = starts[i] + 1_000_000 + random.nextInt(1_000_000);
+        }
+        long startTime = System.currentTimeMillis();
+        CoverageIndex index = new CoverageIndex(starts, stops);
+        System.out.printf("CoverageIndex(%d): %d мс\n", n, System.currentTimeMillis() - startTime);
+        for (int m : new int[]{10_000, 10_000_000}) {
+            int[] points = new int[m];
+            for (int i = 0; i < m; i++) {
+                points[i] = random.nextInt(3_000_000);
+            }
+            startTime = System.currentTimeMillis();
+            int[] covered = index.count(points);
+            System.out.printf("count(%d точек): %d мс, covered[0]=%d\n", m, System.currentTimeMillis() - startTime, covered[0]);
+        }
+
+        // упакованные отрезки: Arrays.sort против sortPacked, в том числе на входе из многих равных
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            packed[i] = pack(starts[i] % 1000, stops[i] % 1000);
+        }
+        long[] randomPacked = new long[n];
+        for (int i = 0; i < n; i++) {
+            randomPacked[i] = pack(starts[i], stops[i]);
+        }
+        for (long[] data : new long[][]{randomPacked, packed}) {
+            long[] copy = data.clone();
+            startTime = System.currentTimeMillis();
+            Arrays.sort(copy);
+            long jdk = System.currentTimeMillis() - startTime;
+            copy = data.clone();
+            startTime = System.currentTimeMillis();
+            sortPacked(copy, false);
+            long sequential = System.currentTimeMillis() - startTime;
+            copy = data.clone();
+            startTime = System.currentTimeMillis();
+            sortPacked(copy, true);
+            System.out.printf("Arrays.sort: %d мс, sortPacked: %d мс, параллельно: %d мс\n",
+                    jdk, sequential, System.currentTimeMillis() - startTime);
+        }
     }
 
     int[] getAccessory2(InputStream stream) throws FileNotFoundException {
         Scanner scanner = new Scanner(stream);
 
         int n = scanner.nextInt();
-        Segment[] segments = new Segment[n];
         int m = scanner.nextInt();
+        // отрезок упакован в long: начало в старших битах, конец в младших - без объектов и ссылок
+        long[] segments = new long[n];
         int[] points = new int[m];
-        int[] result = new int[m];
 
         for (int i = 0; i < n; i++) {
             int start = scanner.nextInt();
             int stop = scanner.nextInt();
-            if (start > stop) {
-                int tmp = start;
-                start = stop;
-                stop = tmp;
-            }
-            segments[i] = new Segment(start, stop);
+            segments[i] = pack(Math.min(start, stop), Math.max(start, stop));
         }
 
         for (int i = 0; i < m; i++) {
             points[i] = scanner.nextInt();
         }
 
-        // Сортируем массив отрезков по start с 3-разбиением (быстрая сортировка)
-        quickSort3Way(segments, 0, n - 1);
+        // Сортируем отрезки на месте: быстрая сортировка с двумя опорными (3-разбиение)
+        sortPacked(segments, false);
 
-        // Для каждой точки ищем количество покрывающих отрезков
-        for (int i = 0; i < m; i++) {
-            int point = points[i];
-            int firstIndex = binarySearchFirstCover(segments, point);
-            if (firstIndex == -1) {
-                result[i] = 0;
-            } else {
-                // Перебираем все отрезки, начиная с firstIndex, пока покрывают точку
-                int count = 0;
-                for (int j = firstIndex; j < n && segments[j].start <= point; j++) {
-                    if (segments[j].stop >= point) count++;
-                }
-                result[i] = count;
-            }
-        }
+        // Перебор отрезков после первого покрывающего квадратичен на длинных перекрывающихся
+        // отрезках, поэтому считаем через индекс: O(log n) на точку. Начала в отсортированных
+        // отрезках уже упорядочены, так что индекс досортировывает только концы
+        return new CoverageIndex(segments).count(points);
+    }
 
-        return result;
+    // Начало - знаковые старшие 32 бита, конец - младшие со сдвигом знака,
+    // так что порядок long совпадает с порядком пар (start, stop)
+    static long pack(int start, int stop) {
+        return (long) start << 32 | (stop ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
     }
 
-    // Быстрая сортировка с 3-разбиением (Dutch National Flag)
-    private void quickSort3Way(Segment[] arr, int low, int high) {
-        while (low < high) {
-            int lt = low, gt = high;
-            Segment pivot = arr[low];
-            int i = low + 1;
-            while (i <= gt) {
-                int cmp = arr[i].compareTo(pivot);
-                if (cmp < 0) {
-                    swap(arr, lt++, i++);
-                } else if (cmp > 0) {
-                    swap(arr, i, gt--);
-                } else {
-                    i++;
-                }
+    static int startOf(long segment) {
+        return (int) (segment >> 32);
+    }
+
+    static int stopOf(long segment) {
+        return (int) segment ^ Integer.MIN_VALUE;
+    }
+
+    // Интроспективная сортировка на месте: разбиение с двумя опорными на три части,
+    // две меньшие части - рекурсией, большая - в цикле (глубина стека O(log n)).
+    // После 2 log n разбиений диапазон досортировывается пирамидой - O(n log n) в худшем случае,
+    // короткие диапазоны - вставками. parallel отдает части крупнее порога в ForkJoinPool
+    static void sortPacked(long[] a, boolean parallel) {
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(a.length));
+        if (parallel && a.length > PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new SortTask(a, 0, a.length - 1, depthLimit));
+        } else {
+            introSort(a, 0, a.length - 1, depthLimit);
+        }
+    }
+
+    static void introSort(long[] a, int low, int high, int depthLimit) {
+        while (high - low >= INSERTION_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                heapSort(a, low, high);
+                return;
             }
-            // Рекурсивно сортируем меньшую часть, итеративно — большую (элиминация хвостовой рекурсии)
-            if (lt - low < high - gt) {
-                quickSort3Way(arr, low, lt - 1);
+            long bounds = partition(a, low, high);
+            int lt = (int) (bounds >>> 32);
+            int gt = (int) bounds;
+            boolean middle = a[lt] != a[gt];    // p == q: средняя часть уже из равных
+            int left = lt - low;
+            int center = middle ? gt - lt - 1 : 0;
+            int right = high - gt;
+            if (left >= center && left >= right) {
+                if (middle) introSort(a, lt + 1, gt - 1, depthLimit);
+                introSort(a, gt + 1, high, depthLimit);
+                high = lt - 1;
+            } else if (right >= center) {
+                introSort(a, low, lt - 1, depthLimit);
+                if (middle) introSort(a, lt + 1, gt - 1, depthLimit);
                 low = gt + 1;
             } else {
-                quickSort3Way(arr, gt + 1, high);
-                high = lt - 1;
+                introSort(a, low, lt - 1, depthLimit);
+                introSort(a, gt + 1, high, depthLimit);
+                low = lt + 1;
+                high = gt - 1;
             }
         }
+        insertionSort(a, low, high);
     }
 
-    // Бинарный поиск первого отрезка, у которого start <= point и stop >= point
-    private int binarySearchFirstCover(Segment[] segments, int point) {
-        int left = 0;
-        int right = segments.length - 1;
-        int result = -1;
-        while (left <= right) {
-            int mid = left + (right - left) / 2;
-            if (segments[mid].start <= point) {
-                if (segments[mid].stop >= point) {
-                    result = mid;
-                    right = mid - 1; // ищем более левый подходящий отрезок
-                } else {
-                    left = mid + 1;
-                }
-            } else {
-                right = mid - 1;
+    // Опорные p <= q - второй и четвертый из пяти равноотстоящих элементов.
+    // Результат: a[low..lt-1] < p = a[lt], p <= a[lt+1..gt-1] <= q = a[gt] < a[gt+1..high];
+    // lt и gt возвращаются упакованными в long
+    private static long partition(long[] a, int low, int high) {
+        int sixth = (high - low + 1) / 6;
+        int e1 = low + sixth;
+        int e3 = (low + high) >>> 1;
+        int e2 = e3 - sixth;
+        int e4 = e3 + sixth;
+        int e5 = e4 + sixth;
+        sortFive(a, e1, e2, e3, e4, e5);
+        swap(a, low, e2);
+        swap(a, high, e4);
+        long p = a[low];
+        long q = a[high];
+        int lt = low + 1;
+        int gt = high - 1;
+        for (int k = lt; k <= gt; k++) {
+            long x = a[k];
+            if (x < p) {
+                swap(a, k, lt++);
+            } else if (x > q) {
+                while (a[gt] > q && k < gt) gt--;
+                swap(a, k, gt--);
+                if (a[k] < p) swap(a, k, lt++);
+            }
+        }
+        lt--;
+        gt++;
+        swap(a, low, lt);
+        swap(a, high, gt);
+        return (long) lt << 32 | gt;
+    }
+
+    private static void sortFive(long[] a, int... at) {
+        for (int i = 1; i < at.length; i++) {
+            long x = a[at[i]];
+            int j = i - 1;
+            while (j >= 0 && a[at[j]] > x) {
+                a[at[j + 1]] = a[at[j]];
+                j--;
             }
+            a[at[j + 1]] = x;
+        }
+    }
+
+    private static void insertionSort(long[] a, int low, int high) {
+        for (int i = low + 1; i <= high; i++) {
+            long x = a[i];
+            int j = i - 1;
+            while (j >= low && a[j] > x) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = x;
+        }
+    }
+
+    private static void heapSort(long[] a, int low, int high) {
+        int n = high - low + 1;
+        for (int i = n / 2 - 1; i >= 0; i--) {
+            siftDown(a, low, i, n);
+        }
+        for (int end = n - 1; end > 0; end--) {
+            swap(a, low, low + end);
+            siftDown(a, low, 0, end);
+        }
+    }
+
+    private static void siftDown(long[] a, int base, int i, int n) {
+        long x = a[base + i];
+        for (int child = 2 * i + 1; child < n; child = 2 * i + 1) {
+            if (child + 1 < n && a[base + child + 1] > a[base + child]) child++;
+            if (a[base + child] <= x) break;
+            a[base + i] = a[base + child];
+            i = child;
         }
-        return result;
+        a[base + i] = x;
     }
 
-    private void swap(Segment[] arr, int i, int j) {
-        Segment temp = arr[i];
-        arr[i] = arr[j];
-        arr[j] = temp;
+    private static void swap(long[] a, int i, int j) {
+        long t = a[i];
+        a[i] = a[j];
+        a[j] = t;
     }
 
-    private class Segment implements Comparable<Segment> {
-        int start;
-        int stop;
+    // Параллельная версия: три части после разбиения сортируются независимыми задачами
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
 
-        Segment(int start, int stop) {
-            this.start = start;
-            this.stop = stop;
+        private final long[] a;
+        private final int low, high, depthLimit;
+
+        SortTask(long[] a, int low, int high, int depthLimit) {
+            this.a = a;
+            this.low = low;
+            this.high = high;
+            this.depthLimit = depthLimit;
         }
 
         @Override
-        public int compareTo(Segment o) {
-            return Integer.compare(this.start, o.start);
+        protected void compute() {
+            if (high - low < PARALLEL_THRESHOLD) {
+                introSort(a, low, high, depthLimit);
+                return;
+            }
+            if (depthLimit == 0) {
+                heapSort(a, low, high);
+                return;
+            }
+            long bounds = partition(a, low, high);
+            int lt = (int) (bounds >>> 32);
+            int gt = (int) bounds;
+            if (a[lt] != a[gt]) {
+                invokeAll(new SortTask(a, low, lt - 1, depthLimit - 1),
+                        new SortTask(a, lt + 1, gt - 1, depthLimit - 1),
+                        new SortTask(a, gt + 1, high, depthLimit - 1));
+            } else {
+                invokeAll(new SortTask(a, low, lt - 1, depthLimit - 1),
+                        new SortTask(a, gt + 1, high, depthLimit - 1));
+            }
+        }
+    }
+
+    // Неизменяемый индекс отрезков: сколько отрезков покрывают точку x.
+    // Покрывают ровно те, что начались не позже x, минус закончившиеся раньше x, поэтому хватает
+    // двух отсортированных массивов - начал и концов - и двух бинарных поисков на точку.
+    // Строится один раз за O(n log n) и переиспользуется для любых наборов точек
+    static final class CoverageIndex {
+        private final int[] starts;
+        private final int[] stops;
+
+        CoverageIndex(int[] starts, int[] stops) {
+            if (starts.length != stops.length) {
+                throw new IllegalArgumentException("starts and stops differ in length: " + starts.length + " != " + stops.length);
+            }
+            this.starts = new int[starts.length];
+            this.stops = new int[stops.length];
+            for (int i = 0; i < starts.length; i++) {
+                this.starts[i] = Math.min(starts[i], stops[i]);
+                this.stops[i] = Math.max(starts[i], stops[i]);
+            }
+            Arrays.sort(this.starts);
+            Arrays.sort(this.stops);
+        }
+
+        // Индекс по упакованным отрезкам (pack), уже отсортированным sortPacked:
+        // начала идут по возрастанию, повторно сортируются только концы
+        CoverageIndex(long[] sortedSegments) {
+            starts = new int[sortedSegments.length];
+            stops = new int[sortedSegments.length];
+            for (int i = 0; i < sortedSegments.length; i++) {
+                if (i > 0 && sortedSegments[i - 1] > sortedSegments[i]) {
+                    throw new IllegalArgumentException("segments are not sorted at index " + i);
+                }
+                starts[i] = startOf(sortedSegments[i]);
+                stops[i] = stopOf(sortedSegments[i]);
+            }
+            Arrays.sort(stops);
+        }
+
+        int size() {
+            return starts.length;
+        }
+
+        int count(int x) {
+            return countNotGreater(starts, x) - countLess(stops, x);
+        }
+
+        // Пакет точек. Когда точек сравнимо с числом отрезков, выгоднее отсортировать точки
+        // (пары точка-номер в long) и пройти оба массива одним слиянием, чем делать 2m случайных
+        // бинарных поисков по памяти
+        int[] count(int[] points) {
+            int[] result = new int[points.length];
+            if ((long) points.length * 8 < starts.length) {
+                for (int i = 0; i < points.length; i++) {
+                    result[i] = count(points[i]);
+                }
+                return result;
+            }
+            long[] order = new long[points.length];
+            for (int i = 0; i < points.length; i++) {
+                order[i] = (long) points[i] << 32 | i;
+            }
+            Arrays.sort(order);
+            int started = 0;
+            int stopped = 0;
+            for (long packed : order) {
+                int x = (int) (packed >> 32);
+                while (started < starts.length && starts[started] <= x) started++;
+                while (stopped < stops.length && stops[stopped] < x) stopped++;
+                result[(int) packed] = started - stopped;
+            }
+            return result;
+        }
+
+        private static int countNotGreater(int[] a, int key) {
+            int left = 0, right = a.length;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (a[mid] <= key) {
+                    left = mid + 1;
+                } else {
+                    right = mid;
+                }
+            }
+            return left;
+        }
+
+        private static int countLess(int[] a, int key) {
+            int left = 0, right = a.length;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (a[mid] < key) {
+                    left = mid + 1;
+                } else {
+                    right = mid;
+                }
+            }
+            return left;
         }
     }
 }
@@ -4,6 +4,7 @@ import org.junit.Test;
 
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.Assert.assertTrue;
 
@@ -17,6 +18,38 @@ public class Lesson05Test {
         assertTrue("A failed", ok);
     }
 
+    @Test
+    public void checkA_sweep() throws Exception {
+        Random random = new Random(21);
+        boolean ok = true;
+        for (int n : new int[]{0, 1, 10, 500, 5000}) {
+            int spread = n < 100 ? 20 : Integer.MAX_VALUE;
+            int[] starts = new int[n];
+            int[] stops = new int[n];
+            for (int i = 0; i < n; i++) {
+                starts[i] = spread == 20 ? random.nextInt(spread) : random.nextInt();
+                stops[i] = spread == 20 ? random.nextInt(spread) : (int) Math.min(Integer.MAX_VALUE, starts[i] + (long) random.nextInt(1 << 28));
+            }
+            int[] points = new int[n + 3];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = i < n && random.nextBoolean() ? stops[i] : (spread == 20 ? random.nextInt(spread) : random.nextInt());
+            }
+            points[points.length - 1] = Integer.MIN_VALUE;
+            points[points.length - 2] = Integer.MAX_VALUE;
+            int[] expected = new int[points.length];
+            for (int j = 0; j < points.length; j++) {
+                for (int i = 0; i < n; i++) {
+                    int lo = Math.min(starts[i], stops[i]);
+                    int hi = Math.max(starts[i], stops[i]);
+                    if (lo <= points[j] && points[j] <= hi) expected[j]++;
+                }
+            }
+            ok = ok && Arrays.equals(expected, A_QSort.sweep(starts, stops, points, false))
+                    && Arrays.equals(expected, A_QSort.sweep(starts, stops, points, true));
+        }
+        assertTrue("A sweep failed", ok);
+    }
+
 
     @Test
     public void checkB() throws Exception {
@@ -27,6 +60,44 @@ public class Lesson05Test {
         assertTrue("B failed", ok);
     }
 
+    @Test
+    public void checkB_wideRange() throws Exception {
+        Random random = new Random(24);
+        boolean ok = true;
+        for (int n : new int[]{0, 1, 2, 100, 5000, 300_000}) {
+            for (int pattern = 0; pattern < 5; pattern++) {
+                int[] ints = new int[n];
+                long[] longs = new long[n];
+                for (int i = 0; i < n; i++) {
+                    switch (pattern) {
+                        case 0: ints[i] = random.nextInt(11); longs[i] = ints[i] - 5; break;
+                        case 1: ints[i] = random.nextInt(); longs[i] = random.nextLong(); break;
+                        case 2: ints[i] = random.nextInt(1 << 20) - (1 << 19); longs[i] = ints[i] * 1_000_000_007L; break;
+                        // выборка видит узкий диапазон, а редкие выбросы - нет
+                        case 3: ints[i] = i % 1031 == 7 ? Integer.MIN_VALUE + i : 42;
+                            longs[i] = i % 1031 == 7 ? Long.MAX_VALUE - i : -42; break;
+                        default: ints[i] = n - i; longs[i] = (long) (n - i) << 40;
+                    }
+                }
+                int[] expected = ints.clone();
+                Arrays.sort(expected);
+                long[] expectedLongs = longs.clone();
+                Arrays.sort(expectedLongs);
+                int[] sequential = ints.clone();
+                B_CountSort.sort(sequential);
+                int[] parallel = ints.clone();
+                B_CountSort.sort(parallel, true);
+                long[] sequentialLongs = longs.clone();
+                B_CountSort.sort(sequentialLongs);
+                long[] parallelLongs = longs.clone();
+                B_CountSort.sort(parallelLongs, true);
+                ok = ok && Arrays.equals(expected, sequential) && Arrays.equals(expected, parallel)
+                        && Arrays.equals(expectedLongs, sequentialLongs) && Arrays.equals(expectedLongs, parallelLongs);
+            }
+        }
+        assertTrue("B wide range failed", ok);
+    }
+
 
     @Test
     public void checkC() throws Exception {
@@ -37,4 +108,84 @@ public class Lesson05Test {
         assertTrue("C failed", ok);
     }
 
+    @Test
+    public void checkC_coverageIndex() throws Exception {
+        Random random = new Random(22);
+        boolean ok = true;
+        for (int n : new int[]{0, 1, 7, 300, 2000}) {
+            int[] starts = new int[n];
+            int[] stops = new int[n];
+            for (int i = 0; i < n; i++) {
+                starts[i] = random.nextInt(1000) - 500;
+                stops[i] = random.nextBoolean() ? starts[i] + random.nextInt(800) : random.nextInt(1000) - 500;
+            }
+            C_QSortOptimized.CoverageIndex index = new C_QSortOptimized.CoverageIndex(starts, stops);
+            // тот же индекс по упакованным отрезкам после sortPacked
+            long[] segments = new long[n];
+            for (int i = 0; i < n; i++) {
+                segments[i] = C_QSortOptimized.pack(Math.min(starts[i], stops[i]), Math.max(starts[i], stops[i]));
+            }
+            C_QSortOptimized.sortPacked(segments, false);
+            C_QSortOptimized.CoverageIndex sorted = new C_QSortOptimized.CoverageIndex(segments);
+            for (int m : new int[]{1, 5, 3000}) {
+                int[] points = new int[m];
+                for (int j = 0; j < m; j++) {
+                    points[j] = random.nextInt(1400) - 600;
+                }
+                int[] batch = index.count(points);
+                ok = ok && Arrays.equals(batch, sorted.count(points));
+                for (int j = 0; j < m; j++) {
+                    int expected = 0;
+                    for (int i = 0; i < n; i++) {
+                        if (Math.min(starts[i], stops[i]) <= points[j] && points[j] <= Math.max(starts[i], stops[i])) expected++;
+                    }
+                    ok = ok && batch[j] == expected && index.count(points[j]) == expected;
+                }
+            }
+        }
+        boolean unsorted = false;
+        try {
+            new C_QSortOptimized.CoverageIndex(new long[]{C_QSortOptimized.pack(2, 3), C_QSortOptimized.pack(1, 4)});
+        } catch (IllegalArgumentException e) {
+            unsorted = true;
+        }
+        assertTrue("C coverage index failed", ok && unsorted);
+    }
+
+    @Test
+    public void checkC_sortPacked() throws Exception {
+        Random random = new Random(23);
+        boolean ok = C_QSortOptimized.startOf(C_QSortOptimized.pack(-5, Integer.MIN_VALUE)) == -5
+                && C_QSortOptimized.stopOf(C_QSortOptimized.pack(-5, Integer.MIN_VALUE)) == Integer.MIN_VALUE
+                && C_QSortOptimized.pack(1, -1) < C_QSortOptimized.pack(1, 0)
+                && C_QSortOptimized.pack(-1, Integer.MAX_VALUE) < C_QSortOptimized.pack(0, Integer.MIN_VALUE);
+        for (int n : new int[]{0, 1, 2, 5, 31, 32, 33, 1000, 20_000, 100_000}) {
+            for (int pattern = 0; pattern < 5; pattern++) {
+                long[] a = new long[n];
+                for (int i = 0; i < n; i++) {
+                    switch (pattern) {
+                        case 0: a[i] = C_QSortOptimized.pack(random.nextInt(), random.nextInt()); break;
+                        case 1: a[i] = C_QSortOptimized.pack(random.nextInt(3), random.nextInt(2)); break;
+                        case 2: a[i] = C_QSortOptimized.pack(i, n - i); break;
+                        case 3: a[i] = C_QSortOptimized.pack(n - i, 0); break;
+                        default: a[i] = C_QSortOptimized.pack(Math.min(i, n - i), i % 7);
+                    }
+                }
+                long[] expected = a.clone();
+                Arrays.sort(expected);
+                long[] sequential = a.clone();
+                C_QSortOptimized.sortPacked(sequential, false);
+                long[] parallel = a.clone();
+                C_QSortOptimized.sortPacked(parallel, true);
+                // без разбиений - сразу пирамида, и с одним уровнем разбиения
+                long[] heap = a.clone();
+                C_QSortOptimized.introSort(heap, 0, n - 1, 0);
+                long[] shallow = a.clone();
+                C_QSortOptimized.introSort(shallow, 0, n - 1, 1);
+                ok = ok && Arrays.equals(expected, sequential) && Arrays.equals(expected, parallel)
+                        && Arrays.equals(expected, heap) && Arrays.equals(expected, shallow);
+            }
+        }
+        assertTrue("C sortPacked failed", ok);
+    }
 }
@@ -2,6 +2,8 @@ package by.it.group410971.kozich.lesson06;
 
 import java.io.FileNotFoundException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
 import java.util.Scanner;
 
 /*
@@ -33,7 +35,24 @@ public class A_LIS {
         InputStream stream = A_LIS.class.getResourceAsStream("dataA.txt");
         A_LIS instance = new A_LIS();
         int result = instance.getSeqSize(stream);
-        System.out.print(result);
+        System.out.println(result);
+
+        // 10^7 случайных значений: O(n^2) здесь уже не дождаться
+        int n = 10_000_000;
+        Random random = new Random(25);
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = random.nextInt();
+        }
+        long startTime = System.currentTimeMillis();
+        int[] indices = lisIndices(a);
+        System.out.printf("lisIndices(%d): длина %d, %d мс\n", n, indices.length, System.currentTimeMillis() - startTime);
+        StreamingLIS streaming = new StreamingLIS();
+        startTime = System.currentTimeMillis();
+        for (int x : a) {
+            streaming.append(x);
+        }
+        System.out.printf("StreamingLIS: длина %d, %d мс\n", streaming.length(), System.currentTimeMillis() - startTime);
     }
 
     int getSeqSize(InputStream stream) throws FileNotFoundException {
@@ -45,18 +64,65 @@ public class A_LIS {
             m[i] = scanner.nextInt();
         }
 
-        // dp[i] — длина наибольшей возрастающей подпоследовательности, заканчивающейся в i
-        int[] dp = new int[n];
-        int maxLIS = 1;
-        for (int i = 0; i < n; i++) {
-            dp[i] = 1; // каждый элемент сам по себе — подпоследовательность длины 1
-            for (int j = 0; j < i; j++) {
-                if (m[j] < m[i] && dp[j] + 1 > dp[i]) {
-                    dp[i] = dp[j] + 1;
+        return lisIndices(m).length;
+    }
+
+    // Терпеливая сортировка: tails[k] - наименьший возможный последний элемент возрастающей
+    // подпоследовательности длины k+1 (массив возрастает), очередной элемент заменяет первый
+    // хвост >= себя или удлиняет массив - бинарный поиск, O(n log n) вместо O(n^2).
+    // Для восстановления у каждого элемента хранится индекс предыдущего в его цепочке.
+    // Возвращает индексы (с нуля) одной из наибольших строго возрастающих подпоследовательностей
+    static int[] lisIndices(int[] a) {
+        int[] tails = new int[a.length];        // индексы элементов-хвостов
+        int[] previous = new int[a.length];
+        int length = 0;
+        for (int i = 0; i < a.length; i++) {
+            int left = 0, right = length;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (a[tails[mid]] < a[i]) {
+                    left = mid + 1;
+                } else {
+                    right = mid;
                 }
             }
-            if (dp[i] > maxLIS) maxLIS = dp[i];
+            previous[i] = left > 0 ? tails[left - 1] : -1;
+            tails[left] = i;
+            if (left == length) length++;
+        }
+        int[] indices = new int[length];
+        for (int k = length - 1, i = length > 0 ? tails[length - 1] : -1; k >= 0; k--, i = previous[i]) {
+            indices[k] = i;
+        }
+        return indices;
+    }
+
+    // Потоковый режим: значения приходят по одному, хранятся только хвосты (не больше
+    // текущей длины НВП), история не перечитывается - O(log L) на значение
+    static final class StreamingLIS {
+        private int[] tails = new int[16];
+        private int length;
+
+        void append(int value) {
+            int left = 0, right = length;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (tails[mid] < value) {
+                    left = mid + 1;
+                } else {
+                    right = mid;
+                }
+            }
+            if (left == tails.length) {
+                tails = Arrays.copyOf(tails, tails.length * 2);
+            }
+            tails[left] = value;
+            if (left == length) length++;
+        }
+
+        // длина наибольшей возрастающей подпоследовательности среди всех добавленных значений
+        int length() {
+            return length;
         }
-        return maxLIS;
     }
 }
@@ -3,6 +3,7 @@ package by.it.group410971.kozich.lesson06;
 import org.junit.Test;
 
 import java.io.InputStream;
+import java.util.Random;
 
 import static org.junit.Assert.assertTrue;
 
@@ -16,6 +17,43 @@ public class Lesson06Test {
         assertTrue("A failed", ok);
     }
 
+    @Test
+    public void checkA_patience() throws Exception {
+        Random random = new Random(25);
+        boolean ok = A_LIS.lisIndices(new int[0]).length == 0;
+        for (int n : new int[]{1, 2, 5, 50, 700}) {
+            for (int domain : new int[]{3, 1000, Integer.MAX_VALUE}) {
+                int[] a = new int[n];
+                for (int i = 0; i < n; i++) {
+                    a[i] = random.nextInt(domain);
+                }
+                // эталон - квадратичная динамика
+                int[] dp = new int[n];
+                int expected = 0;
+                for (int i = 0; i < n; i++) {
+                    dp[i] = 1;
+                    for (int j = 0; j < i; j++) {
+                        if (a[j] < a[i]) dp[i] = Math.max(dp[i], dp[j] + 1);
+                    }
+                    expected = Math.max(expected, dp[i]);
+                }
+                int[] indices = A_LIS.lisIndices(a);
+                ok = ok && indices.length == expected;
+                for (int k = 1; k < indices.length; k++) {
+                    ok = ok && indices[k - 1] < indices[k] && a[indices[k - 1]] < a[indices[k]];
+                }
+                A_LIS.StreamingLIS stream = new A_LIS.StreamingLIS();
+                int prefixBest = 0;
+                for (int i = 0; i < n; i++) {
+                    stream.append(a[i]);
+                    prefixBest = Math.max(prefixBest, dp[i]);
+                    ok = ok && stream.length() == prefixBest;
+                }
+            }
+        }
+        assertTrue("A patience failed", ok);
+    }
+
 
     @Test
     public void checkB() throws Exception {